@@ -0,0 +1,141 @@
+package dev.mccue.module_info.benchmarks;
+
+import dev.mccue.module_info.Export;
+import dev.mccue.module_info.ExportTo;
+import dev.mccue.module_info.Module;
+import dev.mccue.module_info.ModuleInfo;
+import dev.mccue.module_info.Package;
+import dev.mccue.module_info.Provide;
+import dev.mccue.module_info.Require;
+import dev.mccue.module_info.Use;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+/// Deterministic inputs for the benchmarks.
+///
+/// Everything is derived from a size and a seed, so the same parameters
+/// always produce byte-for-byte identical module infos and jars, and numbers
+/// from different runs and machines can be compared.
+public final class Corpus {
+    public static final long SEED = 0x6d6f64756c65L;
+
+    private Corpus() {}
+
+    /// Where a jar keeps its `module-info.class`.
+    public enum Layout {
+        /// `module-info.class` at the root, written as the last entry.
+        ROOT,
+        /// Only `META-INF/versions/N/module-info.class` entries, one for each of
+        /// several releases, with `Multi-Release: true` in the manifest.
+        MULTI_RELEASE
+    }
+
+    /// A module with `size` exports, requires and packages, and a tenth as many
+    /// services used and provided.
+    public static ModuleInfo moduleInfo(int size) {
+        var random = new SplittableRandom(SEED + size);
+        var packages = new ArrayList<Package>(size);
+        var exports = new ArrayList<Export>(size);
+        var requires = new ArrayList<Require>(size);
+        for (int i = 0; i < size; i++) {
+            var package_ = new Package("com.example.generated.p" + i + ".impl");
+            packages.add(package_);
+
+            var to = new ArrayList<ExportTo>();
+            if (random.nextInt(4) == 0) {
+                for (int t = random.nextInt(1, 4); t > 0; t--) {
+                    to.add(new ExportTo("com.example.friend" + random.nextInt(size)));
+                }
+            }
+            exports.add(new Export(package_, to, false, false));
+
+            requires.add(new Require(
+                    new Module("com.example.dependency" + i),
+                    random.nextInt(3) == 0 ? Optional.of("1." + random.nextInt(20) + ".0") : Optional.empty(),
+                    random.nextInt(5) == 0,
+                    random.nextInt(3) == 0,
+                    false,
+                    false
+            ));
+        }
+
+        var provides = new ArrayList<Provide>();
+        var uses = new ArrayList<Use>();
+        for (int i = 0; i < Math.max(1, size / 10); i++) {
+            var service = "com.example.spi.Service" + i;
+            uses.add(new Use(service));
+            provides.add(new Provide(service, List.of(
+                    "com.example.generated.p" + random.nextInt(size) + ".impl.Provider" + i
+            )));
+        }
+
+        return new ModuleInfo(
+                "com.example.generated" + size,
+                exports,
+                requires,
+                provides,
+                uses,
+                Optional.of("1.0." + size),
+                false,
+                false,
+                false,
+                packages,
+                List.of(),
+                Optional.of("com.example.generated.p0.impl.Main"),
+                Optional.empty()
+        );
+    }
+
+    /// Writes a jar with `entries` class entries spread over a hundred packages
+    /// along with the `module-info.class` of {@link #moduleInfo(int)} for a
+    /// module of `moduleSize`.
+    public static Path jar(Path directory, int entries, Layout layout, int moduleSize) throws IOException {
+        var jar = directory.resolve("corpus-" + entries + "-" + layout + "-" + moduleSize + ".jar");
+        var random = new SplittableRandom(SEED + entries);
+        var moduleInfo = moduleInfo(moduleSize).toBytes();
+
+        var manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        if (layout == Layout.MULTI_RELEASE) {
+            manifest.getMainAttributes().put(Attributes.Name.MULTI_RELEASE, "true");
+        }
+
+        try (var out = new JarOutputStream(Files.newOutputStream(jar), manifest)) {
+            for (int i = 0; i < entries; i++) {
+                out.putNextEntry(new JarEntry(
+                        "com/example/generated/p" + (i % 100) + "/impl/Generated" + i + ".class"
+                ));
+                var contents = new byte[random.nextInt(256, 4096)];
+                random.nextBytes(contents);
+                out.write(contents);
+                out.closeEntry();
+            }
+
+            switch (layout) {
+                case ROOT -> {
+                    out.putNextEntry(new JarEntry("module-info.class"));
+                    out.write(moduleInfo);
+                    out.closeEntry();
+                }
+                case MULTI_RELEASE -> {
+                    for (int release : new int[] { 11, 17, 21, 25 }) {
+                        out.putNextEntry(new JarEntry("META-INF/versions/" + release + "/module-info.class"));
+                        out.write(moduleInfo);
+                        out.closeEntry();
+                    }
+                }
+            }
+        }
+        return jar;
+    }
+}
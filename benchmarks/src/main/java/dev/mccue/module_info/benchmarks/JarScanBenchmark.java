@@ -0,0 +1,86 @@
+package dev.mccue.module_info.benchmarks;
+
+import dev.mccue.module_info.ModuleInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarInputStream;
+import java.util.zip.ZipFile;
+
+/// Finding and reading the `module-info.class` of a jar, for jars of increasing
+/// size and both the plain and multi-release layouts.
+///
+/// Each invocation opens the jar, as tools scanning a module path do.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class JarScanBenchmark {
+    @Param({ "10", "1000", "50000" })
+    public int entries;
+
+    @Param({ "ROOT", "MULTI_RELEASE" })
+    public Corpus.Layout layout;
+
+    @Param({ "100" })
+    public int moduleSize;
+
+    private Path directory;
+    private Path jar;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("module-info-benchmarks");
+        jar = Corpus.jar(directory, entries, layout, moduleSize);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (var paths = Files.walk(directory)) {
+            for (var path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Benchmark
+    public Optional<ModuleInfo> fromZipFile() throws IOException {
+        try (var zipFile = new ZipFile(jar.toFile())) {
+            return ModuleInfo.from(zipFile);
+        }
+    }
+
+    @Benchmark
+    public Optional<ModuleInfo> fromChannel() throws IOException {
+        try (var channel = FileChannel.open(jar)) {
+            return ModuleInfo.from(channel);
+        }
+    }
+
+    @Benchmark
+    public Optional<ModuleInfo> fromJarInputStream() throws Exception {
+        try (var jarInputStream = new JarInputStream(Files.newInputStream(jar))) {
+            return ModuleInfo.fromJarInputStream(jarInputStream);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package dev.mccue.module_info.benchmarks;
+
+import dev.mccue.module_info.ModuleInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.classfile.ClassFile;
+import java.lang.classfile.ClassModel;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/// Parsing and writing a single `module-info.class`, for modules of increasing size.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ModuleInfoBenchmark {
+    @Param({ "1", "10", "100", "1000", "10000" })
+    public int size;
+
+    private ModuleInfo moduleInfo;
+    private byte[] bytes;
+    private ClassModel classModel;
+
+    @Setup
+    public void setup() {
+        moduleInfo = Corpus.moduleInfo(size);
+        bytes = moduleInfo.toBytes();
+        classModel = ClassFile.of().parse(bytes);
+    }
+
+    @Benchmark
+    public ModuleInfo fromBytes() {
+        return ModuleInfo.fromBytes(bytes);
+    }
+
+    @Benchmark
+    public ModuleInfo fromClassModel() {
+        return ModuleInfo.from(classModel);
+    }
+
+    @Benchmark
+    public byte[] toBytes() {
+        return moduleInfo.toBytes();
+    }
+
+    @Benchmark
+    public ModuleInfo with() {
+        return moduleInfo.with(mutable -> mutable.version = Optional.of("2.0.0"));
+    }
+}
@@ -0,0 +1,667 @@
+package dev.mccue.module_info;
+
+import org.jspecify.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+
+/// {@link ModuleInfoView} over the raw bytes of a class file, read with a small
+/// parser of its own rather than {@link java.lang.classfile.ClassFile}.
+///
+/// Only the offset of every constant pool entry and of each interesting
+/// attribute is recorded up front. Decoded values are cached in plain fields;
+/// they are immutable, so a race only means decoding twice.
+final class ClassFileModuleInfoView implements ModuleInfoView {
+    private static final int MAGIC = 0xCAFEBABE;
+    private static final int ACC_MODULE = 0x8000;
+
+    static final int ACC_OPEN = 0x0020;
+    static final int ACC_TRANSITIVE = 0x0020;
+    static final int ACC_STATIC_PHASE = 0x0040;
+    static final int ACC_SYNTHETIC = 0x1000;
+    static final int ACC_MANDATED = 0x8000;
+
+    private static final int TAG_UTF8 = 1;
+    private static final int TAG_INTEGER = 3;
+    private static final int TAG_FLOAT = 4;
+    private static final int TAG_LONG = 5;
+    private static final int TAG_DOUBLE = 6;
+    private static final int TAG_CLASS = 7;
+    private static final int TAG_STRING = 8;
+    private static final int TAG_FIELDREF = 9;
+    private static final int TAG_METHODREF = 10;
+    private static final int TAG_INTERFACE_METHODREF = 11;
+    private static final int TAG_NAME_AND_TYPE = 12;
+    private static final int TAG_METHOD_HANDLE = 15;
+    private static final int TAG_METHOD_TYPE = 16;
+    private static final int TAG_DYNAMIC = 17;
+    private static final int TAG_INVOKE_DYNAMIC = 18;
+    private static final int TAG_MODULE = 19;
+    private static final int TAG_PACKAGE = 20;
+
+    private static final int NONE = -1;
+    private static final HexFormat HEX = HexFormat.of();
+
+    private final ByteBuffer bytes;
+    private final int[] constantPool;
+
+    // Offsets into bytes, or NONE
+    private final int moduleAttribute;
+    private final int requiresOffset;
+    private final int exportsOffset;
+    private final int opensOffset;
+    private final int usesOffset;
+    private final int providesOffset;
+    private final int packagesAttribute;
+    private final int mainClassAttribute;
+    private final int targetAttribute;
+    private final int[] hashesAttributes;
+
+    private @Nullable String name;
+    private @Nullable List<Export> exports;
+    private @Nullable List<Require> requires;
+    private @Nullable List<Provide> provides;
+    private @Nullable List<Use> uses;
+    private @Nullable List<Package> packages;
+    private @Nullable List<Hash> hashes;
+
+    ClassFileModuleInfoView(ByteBuffer bytes) {
+        this.bytes = bytes;
+        try {
+            if (bytes.getInt(0) != MAGIC) {
+                throw new IllegalArgumentException("Not a class file.");
+            }
+
+            int count = u2(8);
+            this.constantPool = new int[count];
+            int offset = 10;
+            for (int index = 1; index < count; index++) {
+                constantPool[index] = offset;
+                int tag = u1(offset);
+                offset += switch (tag) {
+                    case TAG_UTF8 -> 3 + u2(offset + 1);
+                    case TAG_CLASS, TAG_STRING, TAG_METHOD_TYPE, TAG_MODULE, TAG_PACKAGE -> 3;
+                    case TAG_METHOD_HANDLE -> 4;
+                    case TAG_INTEGER, TAG_FLOAT, TAG_FIELDREF, TAG_METHODREF, TAG_INTERFACE_METHODREF,
+                         TAG_NAME_AND_TYPE, TAG_DYNAMIC, TAG_INVOKE_DYNAMIC -> 5;
+                    case TAG_LONG, TAG_DOUBLE -> {
+                        // Eight byte constants take up two slots
+                        index++;
+                        yield 9;
+                    }
+                    default -> throw new IllegalArgumentException("Unknown constant pool tag " + tag + ".");
+                };
+            }
+
+            if ((u2(offset) & ACC_MODULE) == 0) {
+                throw new IllegalArgumentException("Class file does not represent a module.");
+            }
+            // access_flags, this_class, super_class
+            offset += 6;
+            offset += 2 + 2 * u2(offset);
+            offset = skipMembers(offset);
+            offset = skipMembers(offset);
+
+            int moduleAttribute = NONE;
+            int packagesAttribute = NONE;
+            int mainClassAttribute = NONE;
+            int targetAttribute = NONE;
+            var hashesAttributes = new int[0];
+            int attributeCount = u2(offset);
+            offset += 2;
+            for (int i = 0; i < attributeCount; i++) {
+                int length = bytes.getInt(offset + 2);
+                if (length < 0 || offset + 6 + length > bytes.limit()) {
+                    throw new IllegalArgumentException("Attribute extends past the end of the class file.");
+                }
+                int info = offset + 6;
+                var attributeName = utf8(u2(offset));
+                switch (attributeName) {
+                    case "Module" -> moduleAttribute = info;
+                    case "ModulePackages" -> {
+                        checkLength(attributeName, length, 2);
+                        checkLength(attributeName, length, 2 + 2 * u2(info));
+                        packagesAttribute = info;
+                    }
+                    case "ModuleMainClass" -> {
+                        checkLength(attributeName, length, 2);
+                        mainClassAttribute = info;
+                    }
+                    case "ModuleTarget" -> {
+                        checkLength(attributeName, length, 2);
+                        targetAttribute = info;
+                    }
+                    case "ModuleHashes" -> {
+                        // algorithm_index, hashes_table_length, then each module_name_index, hash_length and hash
+                        checkLength(attributeName, length, 4);
+                        int end = info + 4;
+                        for (int j = u2(info + 2); j > 0; j--) {
+                            checkLength(attributeName, length, end + 4 - info);
+                            end += 4 + u2(end + 2);
+                        }
+                        checkLength(attributeName, length, end - info);
+                        hashesAttributes = Arrays.copyOf(hashesAttributes, hashesAttributes.length + 1);
+                        hashesAttributes[hashesAttributes.length - 1] = info;
+                    }
+                    default -> {
+                    }
+                }
+                offset = info + length;
+            }
+            if (moduleAttribute == NONE) {
+                throw new IllegalArgumentException("Class file has no Module attribute.");
+            }
+
+            this.moduleAttribute = moduleAttribute;
+            this.packagesAttribute = packagesAttribute;
+            this.mainClassAttribute = mainClassAttribute;
+            this.targetAttribute = targetAttribute;
+            this.hashesAttributes = hashesAttributes;
+
+            // module_name_index, module_flags, module_version_index
+            this.requiresOffset = moduleAttribute + 6;
+            offset = requiresOffset + 2 + 6 * u2(requiresOffset);
+            this.exportsOffset = offset;
+            offset = skipExportsOrOpens(offset);
+            // opens share the layout of exports
+            this.opensOffset = offset;
+            offset = skipExportsOrOpens(offset);
+            this.usesOffset = offset;
+            this.providesOffset = usesOffset + 2 + 2 * u2(usesOffset);
+            offset = providesOffset + 2;
+            for (int i = u2(providesOffset); i > 0; i--) {
+                offset += 4 + 2 * u2(offset + 2);
+            }
+            if (offset > bytes.limit()) {
+                throw new IllegalArgumentException("Module attribute extends past the end of the class file.");
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Truncated class file.", e);
+        }
+    }
+
+    @Override
+    public String name() {
+        var name = this.name;
+        if (name == null) {
+            name = moduleName(u2(moduleAttribute));
+            this.name = name;
+        }
+        return name;
+    }
+
+    @Override
+    public Optional<String> version() {
+        int index = u2(moduleAttribute + 4);
+        return index == 0 ? Optional.empty() : Optional.of(utf8(index));
+    }
+
+    @Override
+    public boolean open() {
+        return (moduleFlags() & ACC_OPEN) != 0;
+    }
+
+    @Override
+    public boolean synthetic() {
+        return (moduleFlags() & ACC_SYNTHETIC) != 0;
+    }
+
+    @Override
+    public boolean mandated() {
+        return (moduleFlags() & ACC_MANDATED) != 0;
+    }
+
+    @Override
+    public int exportCount() {
+        return u2(exportsOffset);
+    }
+
+    @Override
+    public int requiresCount() {
+        int count = u2(requiresOffset);
+        if (!requiresModule("java.base") && !utf8Equals(moduleNameIndex(u2(moduleAttribute)), "java.base")) {
+            count++;
+        }
+        return count;
+    }
+
+    @Override
+    public int providesCount() {
+        return u2(providesOffset);
+    }
+
+    @Override
+    public int usesCount() {
+        return u2(usesOffset);
+    }
+
+    @Override
+    public int packageCount() {
+        return packagesAttribute == NONE ? 0 : u2(packagesAttribute);
+    }
+
+    @Override
+    public boolean requiresModule(String module) {
+        int offset = requiresOffset + 2;
+        for (int i = u2(requiresOffset); i > 0; i--, offset += 6) {
+            if (utf8Equals(moduleNameIndex(u2(offset)), module)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public List<Export> exports() {
+        var exports = this.exports;
+        if (exports == null) {
+            exports = exports(NamePool.NONE);
+            this.exports = exports;
+        }
+        return exports;
+    }
+
+    private List<Export> exports(NamePool pool) {
+        return exportsOrOpens(exportsOffset, pool);
+    }
+
+    /// The opens of the module, which {@link ModuleInfo} has no place for. They
+    /// have the same shape as exports, so they are given as {@link Export}s.
+    List<Export> opens() {
+        return exportsOrOpens(opensOffset, NamePool.NONE);
+    }
+
+    private List<Export> exportsOrOpens(int start, NamePool pool) {
+        int count = u2(start);
+        var list = new ArrayList<Export>(count);
+        int offset = start + 2;
+        for (int i = 0; i < count; i++) {
+            var package_ = pool.package_(packageName(u2(offset)));
+            int flags = u2(offset + 2);
+            int toCount = u2(offset + 4);
+            offset += 6;
+            var to = new ArrayList<ExportTo>(toCount);
+            for (int j = 0; j < toCount; j++, offset += 2) {
+                to.add(pool.exportTo(moduleName(u2(offset))));
+            }
+            list.add(new Export(
+                    package_,
+                    to,
+                    (flags & ACC_SYNTHETIC) != 0,
+                    (flags & ACC_MANDATED) != 0
+            ));
+        }
+        return List.copyOf(list);
+    }
+
+    @Override
+    public List<Require> requires() {
+        var requires = this.requires;
+        if (requires == null) {
+            requires = requires(NamePool.NONE);
+            this.requires = requires;
+        }
+        return requires;
+    }
+
+    private List<Require> requires(NamePool pool) {
+        int count = u2(requiresOffset);
+        var list = new ArrayList<Require>(count + 1);
+        int offset = requiresOffset + 2;
+        for (int i = 0; i < count; i++, offset += 6) {
+            int flags = u2(offset + 2);
+            int version = u2(offset + 4);
+            list.add(pool.require(new Require(
+                    pool.module(moduleName(u2(offset))),
+                    version == 0 ? Optional.empty() : Optional.of(pool.string(utf8(version))),
+                    (flags & ACC_STATIC_PHASE) != 0,
+                    (flags & ACC_TRANSITIVE) != 0,
+                    (flags & ACC_MANDATED) != 0,
+                    (flags & ACC_SYNTHETIC) != 0
+            )));
+        }
+        return ModuleInfo.normalizeRequires(name(), list);
+    }
+
+    @Override
+    public List<Provide> provides() {
+        var provides = this.provides;
+        if (provides == null) {
+            provides = provides(NamePool.NONE);
+            this.provides = provides;
+        }
+        return provides;
+    }
+
+    private List<Provide> provides(NamePool pool) {
+        int count = u2(providesOffset);
+        var list = new ArrayList<Provide>(count);
+        int offset = providesOffset + 2;
+        for (int i = 0; i < count; i++) {
+            var service = pool.string(className(u2(offset)));
+            int withCount = u2(offset + 2);
+            offset += 4;
+            var with = new ArrayList<String>(withCount);
+            for (int j = 0; j < withCount; j++, offset += 2) {
+                with.add(pool.string(className(u2(offset))));
+            }
+            list.add(new Provide(service, with));
+        }
+        return List.copyOf(list);
+    }
+
+    @Override
+    public List<Use> uses() {
+        var uses = this.uses;
+        if (uses == null) {
+            uses = uses(NamePool.NONE);
+            this.uses = uses;
+        }
+        return uses;
+    }
+
+    private List<Use> uses(NamePool pool) {
+        int count = u2(usesOffset);
+        var list = new ArrayList<Use>(count);
+        int offset = usesOffset + 2;
+        for (int i = 0; i < count; i++, offset += 2) {
+            list.add(pool.use(className(u2(offset))));
+        }
+        return List.copyOf(list);
+    }
+
+    @Override
+    public List<Package> packages() {
+        var packages = this.packages;
+        if (packages == null) {
+            packages = packages(NamePool.NONE);
+            this.packages = packages;
+        }
+        return packages;
+    }
+
+    private List<Package> packages(NamePool pool) {
+        int count = packageCount();
+        var list = new ArrayList<Package>(count);
+        int offset = packagesAttribute + 2;
+        for (int i = 0; i < count; i++, offset += 2) {
+            list.add(pool.package_(packageName(u2(offset))));
+        }
+        return List.copyOf(list);
+    }
+
+    @Override
+    public List<Hash> hashes() {
+        var hashes = this.hashes;
+        if (hashes == null) {
+            hashes = hashes(NamePool.NONE);
+            this.hashes = hashes;
+        }
+        return hashes;
+    }
+
+    private List<Hash> hashes(NamePool pool) {
+        var list = new ArrayList<Hash>(hashesAttributes.length);
+        for (int attribute : hashesAttributes) {
+            var algorithm = pool.string(utf8(u2(attribute)));
+            int count = u2(attribute + 2);
+            var moduleHashes = new ArrayList<ModuleHash>(count);
+            int offset = attribute + 4;
+            for (int i = 0; i < count; i++) {
+                var module = pool.module(moduleName(u2(offset)));
+                int length = u2(offset + 2);
+                var hash = new byte[length];
+                bytes.get(offset + 4, hash);
+                moduleHashes.add(new ModuleHash(module, HEX.formatHex(hash)));
+                offset += 4 + length;
+            }
+            list.add(new Hash(algorithm, moduleHashes));
+        }
+        return List.copyOf(list);
+    }
+
+    @Override
+    public Optional<String> mainClass() {
+        return mainClassAttribute == NONE
+                ? Optional.empty()
+                : Optional.of(className(u2(mainClassAttribute)));
+    }
+
+    @Override
+    public Optional<String> targetPlatform() {
+        return targetAttribute == NONE
+                ? Optional.empty()
+                : Optional.of(utf8(u2(targetAttribute)));
+    }
+
+    @Override
+    public ModuleInfo toModuleInfo() {
+        return new ModuleInfo(
+                name(), exports(), requires(), provides(), uses(), version(),
+                open(), synthetic(), mandated(),
+                packages(), hashes(), mainClass(), targetPlatform()
+        );
+    }
+
+    /// Decodes everything at once with names canonicalized through `pool`,
+    /// without keeping any of it in the view.
+    ModuleInfo toModuleInfo(NamePool pool) {
+        if (pool == NamePool.NONE) {
+            return toModuleInfo();
+        }
+        return new ModuleInfo(
+                pool.string(name()), exports(pool), requires(pool), provides(pool), uses(pool),
+                version().map(pool::string),
+                open(), synthetic(), mandated(),
+                packages(pool), hashes(pool), mainClass(), targetPlatform().map(pool::string)
+        );
+    }
+
+    @Override
+    public String fingerprint() {
+        var fingerprint = new ModuleFingerprint(name(), version().orElse(null), moduleFlags());
+
+        int offset = exportsOffset + 2;
+        for (int i = u2(exportsOffset); i > 0; i--) {
+            var package_ = packageName(u2(offset));
+            int flags = u2(offset + 2);
+            int toCount = u2(offset + 4);
+            offset += 6;
+            var to = new ArrayList<String>(toCount);
+            for (int j = 0; j < toCount; j++, offset += 2) {
+                to.add(moduleName(u2(offset)));
+            }
+            fingerprint.export(package_, flags, to);
+        }
+
+        offset = requiresOffset + 2;
+        for (int i = u2(requiresOffset); i > 0; i--, offset += 6) {
+            int version = u2(offset + 4);
+            fingerprint.require(moduleName(u2(offset)), version == 0 ? null : utf8(version), u2(offset + 2));
+        }
+
+        offset = providesOffset + 2;
+        for (int i = u2(providesOffset); i > 0; i--) {
+            var service = className(u2(offset));
+            int withCount = u2(offset + 2);
+            offset += 4;
+            var with = new ArrayList<String>(withCount);
+            for (int j = 0; j < withCount; j++, offset += 2) {
+                with.add(className(u2(offset)));
+            }
+            fingerprint.provide(service, with);
+        }
+
+        offset = usesOffset + 2;
+        for (int i = u2(usesOffset); i > 0; i--, offset += 2) {
+            fingerprint.use(className(u2(offset)));
+        }
+
+        offset = packagesAttribute + 2;
+        for (int i = packageCount(); i > 0; i--, offset += 2) {
+            fingerprint.package_(packageName(u2(offset)));
+        }
+
+        for (int attribute : hashesAttributes) {
+            var algorithm = utf8(u2(attribute));
+            offset = attribute + 4;
+            for (int i = u2(attribute + 2); i > 0; i--) {
+                int length = u2(offset + 2);
+                var hash = new byte[length];
+                bytes.get(offset + 4, hash);
+                fingerprint.hash(algorithm, moduleName(u2(offset)), hash);
+                offset += 4 + length;
+            }
+        }
+
+        return fingerprint.finish(mainClass().orElse(null), targetPlatform().orElse(null));
+    }
+
+    @Override
+    public String toString() {
+        return "ModuleInfoView[name=" + name() + "]";
+    }
+
+    private int moduleFlags() {
+        return u2(moduleAttribute + 2);
+    }
+
+    /// Checks that an attribute holds everything its contents say it does.
+    private static void checkLength(String attribute, int length, int needed) {
+        if (needed > length) {
+            throw new IllegalArgumentException(attribute + " attribute is " + length + " bytes, but needs " + needed + ".");
+        }
+    }
+
+    private int skipMembers(int offset) {
+        int count = u2(offset);
+        offset += 2;
+        for (int i = 0; i < count; i++) {
+            // access_flags, name_index, descriptor_index
+            offset += 6;
+            int attributeCount = u2(offset);
+            offset += 2;
+            for (int j = 0; j < attributeCount; j++) {
+                offset += 6 + bytes.getInt(offset + 2);
+            }
+        }
+        return offset;
+    }
+
+    private int skipExportsOrOpens(int offset) {
+        int count = u2(offset);
+        offset += 2;
+        for (int i = 0; i < count; i++) {
+            offset += 6 + 2 * u2(offset + 4);
+        }
+        return offset;
+    }
+
+    private int u1(int offset) {
+        return Byte.toUnsignedInt(bytes.get(offset));
+    }
+
+    private int u2(int offset) {
+        return Short.toUnsignedInt(bytes.getShort(offset));
+    }
+
+    private int entry(int index, int tag) {
+        if (index <= 0 || index >= constantPool.length || constantPool[index] == 0) {
+            throw new IllegalArgumentException("Invalid constant pool index " + index + ".");
+        }
+        int offset = constantPool[index];
+        if (u1(offset) != tag) {
+            throw new IllegalArgumentException(
+                    "Constant pool entry " + index + " has tag " + u1(offset) + ", not " + tag + "."
+            );
+        }
+        return offset;
+    }
+
+    private int moduleNameIndex(int index) {
+        return u2(entry(index, TAG_MODULE) + 1);
+    }
+
+    private String moduleName(int index) {
+        return utf8(moduleNameIndex(index));
+    }
+
+    private String packageName(int index) {
+        return utf8(u2(entry(index, TAG_PACKAGE) + 1)).replace('/', '.');
+    }
+
+    /// The dotted binary name of a class, as {@link ModuleInfo} gives it.
+    private String className(int index) {
+        return utf8(u2(entry(index, TAG_CLASS) + 1)).replace('/', '.');
+    }
+
+    /// Decodes the modified UTF-8 of a `CONSTANT_Utf8` entry.
+    String utf8(int index) {
+        int offset = entry(index, TAG_UTF8);
+        int length = u2(offset + 1);
+        int start = offset + 3;
+
+        boolean ascii = true;
+        for (int i = 0; i < length; i++) {
+            if (bytes.get(start + i) <= 0) {
+                ascii = false;
+                break;
+            }
+        }
+        if (ascii) {
+            var latin1 = new byte[length];
+            bytes.get(start, latin1);
+            return new String(latin1, StandardCharsets.ISO_8859_1);
+        }
+
+        var chars = new char[length];
+        int count = 0;
+        int i = 0;
+        while (i < length) {
+            int a = u1(start + i);
+            if (a < 0x80 && a != 0) {
+                chars[count++] = (char) a;
+                i++;
+            } else if ((a & 0xE0) == 0xC0 && i + 1 < length) {
+                int b = u1(start + i + 1);
+                chars[count++] = (char) (((a & 0x1F) << 6) | (b & 0x3F));
+                i += 2;
+            } else if ((a & 0xF0) == 0xE0 && i + 2 < length) {
+                int b = u1(start + i + 1);
+                int c = u1(start + i + 2);
+                chars[count++] = (char) (((a & 0x0F) << 12) | ((b & 0x3F) << 6) | (c & 0x3F));
+                i += 3;
+            } else {
+                throw new IllegalArgumentException("Malformed modified UTF-8 in constant pool entry " + index + ".");
+            }
+        }
+        return new String(chars, 0, count);
+    }
+
+    /// Whether a `CONSTANT_Utf8` entry holds `value`, compared without decoding when
+    /// `value` is ASCII.
+    boolean utf8Equals(int index, String value) {
+        int offset = entry(index, TAG_UTF8);
+        int length = u2(offset + 1);
+        if (length != value.length()) {
+            // Only ASCII has one byte per char, and then the lengths must match
+            return length > value.length() && utf8(index).equals(value);
+        }
+        int start = offset + 3;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c == 0 || c >= 0x80) {
+                return utf8(index).equals(value);
+            }
+            if (bytes.get(start + i) != c) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
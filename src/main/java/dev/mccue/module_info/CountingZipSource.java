@@ -0,0 +1,30 @@
+package dev.mccue.module_info;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/// A {@link ZipSource} that counts the bytes read through it.
+final class CountingZipSource implements ZipSource {
+    private final ZipSource source;
+    private long count;
+
+    CountingZipSource(ZipSource source) {
+        this.source = source;
+    }
+
+    long count() {
+        return count;
+    }
+
+    @Override
+    public long size() throws IOException {
+        return source.size();
+    }
+
+    @Override
+    public void readFully(long position, ByteBuffer destination) throws IOException {
+        int remaining = destination.remaining();
+        source.readFully(position, destination);
+        count += remaining;
+    }
+}
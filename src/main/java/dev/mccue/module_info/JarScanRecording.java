@@ -0,0 +1,67 @@
+package dev.mccue.module_info;
+
+import org.jspecify.annotations.Nullable;
+
+/// One search of a jar or jmod for its `module-info.class`, recorded as a
+/// {@link ModuleInfoJarScanEvent} and in {@link ModuleInfoMetrics}.
+///
+/// When neither JFR nor the metrics are listening a shared instance is handed
+/// out, and {@link #nanoTime()} skips the clock so that timings taken only for
+/// the recording cost nothing. The event class is only touched when the
+/// `jdk.jfr` module is present.
+final class JarScanRecording {
+    static final String ZIP_FILE = "ZipFile";
+    static final String CENTRAL_DIRECTORY = "CentralDirectory";
+    static final String JAR_STREAM = "JarInputStream";
+
+    private static final JarScanRecording DISABLED = new JarScanRecording(null, ModuleInfoMetrics.NOT_TIMED);
+
+    private final @Nullable ModuleInfoJarScanEvent event;
+    private final long start;
+
+    private JarScanRecording(@Nullable ModuleInfoJarScanEvent event, long start) {
+        this.event = event;
+        this.start = start;
+    }
+
+    static JarScanRecording begin() {
+        long start = ModuleInfoMetrics.start();
+        ModuleInfoJarScanEvent event = null;
+        if (ModuleInfoMetrics.JFR_AVAILABLE) {
+            event = new ModuleInfoJarScanEvent();
+            if (event.isEnabled()) {
+                event.begin();
+            } else {
+                event = null;
+            }
+        }
+        return event == null && start == ModuleInfoMetrics.NOT_TIMED
+                ? DISABLED
+                : new JarScanRecording(event, start);
+    }
+
+    /// {@link System#nanoTime()}, or `0` when nothing is recording.
+    long nanoTime() {
+        return this == DISABLED ? 0 : System.nanoTime();
+    }
+
+    void complete(
+            String source,
+            @Nullable String path,
+            int entriesVisited,
+            @Nullable String entry,
+            long moduleInfoBytes,
+            long bytesRead,
+            long inflateNanos,
+            long parseNanos
+    ) {
+        if (this == DISABLED) {
+            return;
+        }
+        var event = this.event;
+        if (event != null) {
+            event.complete(source, path, entriesVisited, entry, moduleInfoBytes, bytesRead, inflateNanos, parseNanos);
+        }
+        ModuleInfoMetrics.recordJarScan(start, entriesVisited, entry);
+    }
+}
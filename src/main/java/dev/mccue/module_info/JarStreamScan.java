@@ -0,0 +1,26 @@
+package dev.mccue.module_info;
+
+import java.util.Objects;
+import java.util.Optional;
+
+/// The result of {@link ModuleInfo#fromJarStream(java.io.InputStream, int)}.
+///
+/// @param moduleInfo The module info that was found, if any.
+/// @param entriesVisited How many jar entries were looked at before stopping.
+/// @param bytesConsumed How many bytes were read from the underlying stream. This
+///                      includes whatever the zip decoder buffered ahead of the
+///                      last entry it looked at.
+/// @param complete Whether the answer is final. This is `false` when the entry budget
+///                 ran out before a root `module-info.class` or the end of the jar was
+///                 reached, in which case {@link #moduleInfo()} holds the best
+///                 multi-release candidate seen so far, if any.
+public record JarStreamScan(
+        Optional<ModuleInfo> moduleInfo,
+        int entriesVisited,
+        long bytesConsumed,
+        boolean complete
+) {
+    public JarStreamScan {
+        Objects.requireNonNull(moduleInfo);
+    }
+}
@@ -0,0 +1,419 @@
+package dev.mccue.module_info;
+
+import org.jspecify.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipException;
+
+/// Replaces or adds the `module-info.class` of a jar or jmod without
+/// recompressing anything else.
+///
+/// Every other entry is copied byte for byte, local header, data and data
+/// descriptor included, and its central directory header is copied with only the
+/// offset changed. The work done is therefore bound by how fast the file can be
+/// copied, which the operating system can often do without the bytes passing
+/// through the JVM at all.
+///
+/// The new `module-info.class` takes the place of the entry it replaces, or is
+/// appended after the last entry when there was none. A replaced entry keeps its
+/// timestamp, and an added one gets the current time. Replacing an entry
+/// invalidates any signature that covered it.
+///
+/// The target is written to a temporary file next to it and then moved into
+/// place, so the source and target may be the same file.
+public final class ModularJarRewriter {
+    private static final String ROOT_ENTRY = "module-info.class";
+    private static final int VERSION_NEEDED = 20;
+    private static final int ZIP64_VERSION_NEEDED = 45;
+    private static final int UTF8_FLAG = 0x0800;
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+    private static final int ZIP64_COUNT_MAGIC = 0xFFFF;
+
+    private ModularJarRewriter() {}
+
+    /// Replaces the entry that {@link ModuleInfo#from(java.nio.channels.SeekableByteChannel)}
+    /// would read with the result of applying `consumer` to it.
+    ///
+    /// The entry is updated with {@link ModuleInfo#patch(byte[], Consumer)}, so its
+    /// `opens` and any attributes a {@link ModuleInfo} doesn't model are kept.
+    ///
+    /// @return The updated module info.
+    /// @throws IllegalArgumentException If the source has no `module-info.class`.
+    public static ModuleInfo rewrite(
+            Path source,
+            Path target,
+            Consumer<MutableModuleInfo> consumer
+    ) throws IOException {
+        var temp = tempFile(target);
+        ModuleInfo updated;
+        try {
+            try (var in = FileChannel.open(source)) {
+                var zipSource = ZipSource.of(in);
+                var centralDirectory = ZipCentralDirectory.read(zipSource);
+                var entry = ModuleInfo.moduleInfoEntry(centralDirectory)
+                        .orElseThrow(() -> new IllegalArgumentException(source + " has no module-info.class"));
+                var patched = ModuleInfo.patch(centralDirectory.readEntry(zipSource, entry), consumer);
+                updated = ModuleInfo.fromBytes(patched);
+                write(in, centralDirectory, temp, entry.name(), patched);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return updated;
+    }
+
+    /// Replaces the entry that {@link ModuleInfo#from(java.nio.channels.SeekableByteChannel)}
+    /// would read with `moduleInfoClass`, or adds a root `module-info.class` if there is none.
+    public static void rewrite(Path source, Path target, byte[] moduleInfoClass) throws IOException {
+        replace(source, target, null, moduleInfoClass);
+    }
+
+    /// Replaces the entry named `entryName`, such as
+    /// `META-INF/versions/17/module-info.class`, with `moduleInfoClass`, or adds
+    /// it if there is no entry with that name.
+    public static void rewrite(
+            Path source,
+            Path target,
+            String entryName,
+            byte[] moduleInfoClass
+    ) throws IOException {
+        replace(source, target, Objects.requireNonNull(entryName), moduleInfoClass);
+    }
+
+    private static void replace(
+            Path source,
+            Path target,
+            @Nullable String entryName,
+            byte[] moduleInfoClass
+    ) throws IOException {
+        Objects.requireNonNull(moduleInfoClass);
+        var temp = tempFile(target);
+        try {
+            try (var in = FileChannel.open(source)) {
+                var centralDirectory = ZipCentralDirectory.read(ZipSource.of(in));
+                var name = entryName != null
+                        ? entryName
+                        : ModuleInfo.moduleInfoEntry(centralDirectory)
+                                .map(ZipCentralDirectory.Entry::name)
+                                .orElse(ROOT_ENTRY);
+                write(in, centralDirectory, temp, name, moduleInfoClass);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static Path tempFile(Path target) throws IOException {
+        var directory = target.toAbsolutePath().getParent();
+        return Files.createTempFile(directory, "." + target.getFileName(), ".tmp");
+    }
+
+    private static void write(
+            FileChannel in,
+            ZipCentralDirectory centralDirectory,
+            Path target,
+            String entryName,
+            byte[] contents
+    ) throws IOException {
+        var name = entryName.getBytes(StandardCharsets.UTF_8);
+        var crc = new CRC32();
+        crc.update(contents);
+        var compressed = deflate(contents);
+        boolean deflate = compressed.length < contents.length;
+        var data = deflate ? compressed : contents;
+        int method = deflate ? ZipCentralDirectory.DEFLATED : ZipCentralDirectory.STORED;
+
+        var entries = centralDirectory.entries();
+        var byOffset = new ArrayList<>(entries);
+        byOffset.sort(Comparator.comparingLong(ZipCentralDirectory.Entry::localHeaderOffset));
+
+        long base = centralDirectory.base();
+        var newOffsets = new HashMap<Integer, Long>();
+        long replacementOffset = -1;
+
+        // A replaced entry keeps its timestamp in both headers, an added one is stamped now
+        var headers = centralDirectory.headers();
+        int dosTime = dosTime(LocalDateTime.now());
+        for (var entry : entries) {
+            if (entry.name().equals(entryName)) {
+                dosTime = headers.getInt(entry.headerPosition() + 12);
+                break;
+            }
+        }
+
+        try (var out = FileChannel.open(target, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            transfer(in, 0, base, out);
+
+            for (int i = 0; i < byOffset.size(); i++) {
+                var entry = byOffset.get(i);
+                long start = base + entry.localHeaderOffset();
+                long end = i + 1 < byOffset.size()
+                        ? base + byOffset.get(i + 1).localHeaderOffset()
+                        : centralDirectory.centralDirectoryPosition();
+                long offset = out.position() - base;
+                if (entry.name().equals(entryName)) {
+                    // Later duplicates of the replaced entry are dropped
+                    if (replacementOffset < 0) {
+                        replacementOffset = offset;
+                        writeLocalHeader(out, name, method, dosTime, (int) crc.getValue(), data.length, contents.length);
+                        writeFully(out, ByteBuffer.wrap(data));
+                    }
+                } else {
+                    newOffsets.put(entry.headerPosition(), offset);
+                    transfer(in, start, end - start, out);
+                }
+            }
+            if (replacementOffset < 0) {
+                replacementOffset = out.position() - base;
+                writeLocalHeader(out, name, method, dosTime, (int) crc.getValue(), data.length, contents.length);
+                writeFully(out, ByteBuffer.wrap(data));
+            }
+
+            long centralDirectoryOffset = out.position() - base;
+            long count = 0;
+            boolean wroteReplacement = false;
+            for (var entry : entries) {
+                int position = entry.headerPosition();
+                if (entry.name().equals(entryName)) {
+                    if (!wroteReplacement) {
+                        writeCentralHeader(
+                                out, name, method, dosTime,
+                                (int) crc.getValue(), data.length, contents.length, replacementOffset
+                        );
+                        wroteReplacement = true;
+                        count++;
+                    }
+                    continue;
+                }
+
+                int length = ZipCentralDirectory.CENTRAL_HEADER_SIZE
+                        + centralDirectory.nameLength(position)
+                        + Short.toUnsignedInt(headers.getShort(position + 30))
+                        + Short.toUnsignedInt(headers.getShort(position + 32));
+                var header = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+                header.put(0, headers, position, length);
+                setOffset(header, entry, newOffsets.get(position));
+                writeFully(out, header);
+                count++;
+            }
+            if (!wroteReplacement) {
+                writeCentralHeader(
+                        out, name, method, dosTime,
+                        (int) crc.getValue(), data.length, contents.length, replacementOffset
+                );
+                count++;
+            }
+
+            long centralDirectorySize = out.position() - base - centralDirectoryOffset;
+            writeEnd(out, base, count, centralDirectoryOffset, centralDirectorySize, centralDirectory.comment());
+        }
+    }
+
+    private static void setOffset(ByteBuffer header, ZipCentralDirectory.Entry entry, long offset) throws ZipException {
+        if (Integer.toUnsignedLong(header.getInt(42)) != ZIP64_MAGIC) {
+            if (offset >= ZIP64_MAGIC) {
+                throw new ZipException("Entry " + entry.name() + " would need a zip64 offset, which it does not have room for");
+            }
+            header.putInt(42, (int) offset);
+            return;
+        }
+
+        int nameLength = Short.toUnsignedInt(header.getShort(28));
+        int extra = ZipCentralDirectory.CENTRAL_HEADER_SIZE + nameLength;
+        int extraEnd = extra + Short.toUnsignedInt(header.getShort(30));
+        while (extra + 4 <= extraEnd) {
+            int tag = Short.toUnsignedInt(header.getShort(extra));
+            int length = Short.toUnsignedInt(header.getShort(extra + 2));
+            if (tag == 0x0001) {
+                int field = extra + 4;
+                if (Integer.toUnsignedLong(header.getInt(24)) == ZIP64_MAGIC) {
+                    field += 8;
+                }
+                if (Integer.toUnsignedLong(header.getInt(20)) == ZIP64_MAGIC) {
+                    field += 8;
+                }
+                header.putLong(field, offset);
+                return;
+            }
+            extra += 4 + length;
+        }
+        throw new ZipException("Entry " + entry.name() + " has an invalid zip64 extra field");
+    }
+
+    private static void writeLocalHeader(
+            FileChannel out,
+            byte[] name,
+            int method,
+            int dosTime,
+            int crc,
+            long compressedSize,
+            long uncompressedSize
+    ) throws IOException {
+        var header = ByteBuffer.allocate(ZipCentralDirectory.LOCAL_HEADER_SIZE + name.length)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(ZipCentralDirectory.LOCAL_HEADER_SIGNATURE);
+        header.putShort((short) VERSION_NEEDED);
+        header.putShort((short) UTF8_FLAG);
+        header.putShort((short) method);
+        header.putInt(dosTime);
+        header.putInt(crc);
+        header.putInt((int) compressedSize);
+        header.putInt((int) uncompressedSize);
+        header.putShort((short) name.length);
+        header.putShort((short) 0);
+        header.put(name);
+        header.flip();
+        writeFully(out, header);
+    }
+
+    private static void writeCentralHeader(
+            FileChannel out,
+            byte[] name,
+            int method,
+            int dosTime,
+            int crc,
+            long compressedSize,
+            long uncompressedSize,
+            long localHeaderOffset
+    ) throws IOException {
+        if (localHeaderOffset >= ZIP64_MAGIC) {
+            throw new ZipException("module-info.class would need a zip64 offset");
+        }
+        var header = ByteBuffer.allocate(ZipCentralDirectory.CENTRAL_HEADER_SIZE + name.length)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(ZipCentralDirectory.CENTRAL_HEADER_SIGNATURE);
+        header.putShort((short) VERSION_NEEDED);
+        header.putShort((short) VERSION_NEEDED);
+        header.putShort((short) UTF8_FLAG);
+        header.putShort((short) method);
+        header.putInt(dosTime);
+        header.putInt(crc);
+        header.putInt((int) compressedSize);
+        header.putInt((int) uncompressedSize);
+        header.putShort((short) name.length);
+        header.putShort((short) 0);
+        header.putShort((short) 0);
+        header.putShort((short) 0);
+        header.putShort((short) 0);
+        header.putInt(0);
+        header.putInt((int) localHeaderOffset);
+        header.put(name);
+        header.flip();
+        writeFully(out, header);
+    }
+
+    private static void writeEnd(
+            FileChannel out,
+            long base,
+            long count,
+            long centralDirectoryOffset,
+            long centralDirectorySize,
+            byte[] comment
+    ) throws IOException {
+        boolean zip64 = count >= ZIP64_COUNT_MAGIC
+                || centralDirectoryOffset >= ZIP64_MAGIC
+                || centralDirectorySize >= ZIP64_MAGIC;
+        if (zip64) {
+            long zip64EndOffset = out.position() - base;
+            var zip64End = ByteBuffer.allocate(ZipCentralDirectory.ZIP64_END_SIZE + ZipCentralDirectory.ZIP64_LOCATOR_SIZE)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            zip64End.putInt(ZipCentralDirectory.ZIP64_END_SIGNATURE);
+            zip64End.putLong(ZipCentralDirectory.ZIP64_END_SIZE - 12);
+            zip64End.putShort((short) ZIP64_VERSION_NEEDED);
+            zip64End.putShort((short) ZIP64_VERSION_NEEDED);
+            zip64End.putInt(0);
+            zip64End.putInt(0);
+            zip64End.putLong(count);
+            zip64End.putLong(count);
+            zip64End.putLong(centralDirectorySize);
+            zip64End.putLong(centralDirectoryOffset);
+            zip64End.putInt(ZipCentralDirectory.ZIP64_LOCATOR_SIGNATURE);
+            zip64End.putInt(0);
+            zip64End.putLong(zip64EndOffset);
+            zip64End.putInt(1);
+            zip64End.flip();
+            writeFully(out, zip64End);
+        }
+
+        var end = ByteBuffer.allocate(ZipCentralDirectory.END_SIZE + comment.length)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        end.putInt(ZipCentralDirectory.END_SIGNATURE);
+        end.putShort((short) 0);
+        end.putShort((short) 0);
+        end.putShort((short) (zip64 ? ZIP64_COUNT_MAGIC : count));
+        end.putShort((short) (zip64 ? ZIP64_COUNT_MAGIC : count));
+        end.putInt((int) (zip64 ? ZIP64_MAGIC : centralDirectorySize));
+        end.putInt((int) (zip64 ? ZIP64_MAGIC : centralDirectoryOffset));
+        end.putShort((short) comment.length);
+        end.put(comment);
+        end.flip();
+        writeFully(out, end);
+    }
+
+    private static byte[] deflate(byte[] contents) {
+        var deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(contents);
+            deflater.finish();
+            var buffer = new byte[contents.length + 64];
+            int length = 0;
+            while (!deflater.finished()) {
+                if (length == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+                length += deflater.deflate(buffer, length, buffer.length - length);
+            }
+            return Arrays.copyOf(buffer, length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static int dosTime(LocalDateTime time) {
+        if (time.getYear() < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return (time.getYear() - 1980) << 25
+                | time.getMonthValue() << 21
+                | time.getDayOfMonth() << 16
+                | time.getHour() << 11
+                | time.getMinute() << 5
+                | time.getSecond() >> 1;
+    }
+
+    private static void transfer(FileChannel in, long position, long count, FileChannel out) throws IOException {
+        while (count > 0) {
+            long transferred = in.transferTo(position, count, out);
+            if (transferred <= 0) {
+                throw new ZipException("Unexpected end of zip data at " + position);
+            }
+            position += transferred;
+            count -= transferred;
+        }
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package dev.mccue.module_info;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/// Facts about a jar that can be read from its central directory alone.
+public final class ModularJars {
+    private static final byte[] CLASS_SUFFIX = ".class".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] META_INF = "META-INF/".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] VERSIONS = "META-INF/versions/".getBytes(StandardCharsets.US_ASCII);
+
+    private ModularJars() {}
+
+    /// Every package that holds a class in `jar`, in order, for filling in
+    /// {@link ModuleInfo#packages()}.
+    ///
+    /// Only the names in the central directory are looked at, so no entry is
+    /// ever read or inflated. Classes under `META-INF/versions/N/` count towards
+    /// their package, anything else under `META-INF/` is skipped, and so are
+    /// directories that hold only resources or whose names are not legal package
+    /// names. Classes in the unnamed package are left out.
+    public static List<Package> packagesOf(Path jar) throws IOException {
+        return toPackages(packageNames(jar));
+    }
+
+    /// Like {@link #packagesOf(Path)}, for an open channel. The channel is not closed.
+    public static List<Package> packagesOf(SeekableByteChannel channel) throws IOException {
+        return toPackages(packageNames(ZipCentralDirectory.read(ZipSource.of(channel))));
+    }
+
+    /// `moduleInfo` with every package of `jar` added to its {@link ModuleInfo#packages()}.
+    ///
+    /// Packages that are already listed keep their place, and the rest are added
+    /// after them in order.
+    public static ModuleInfo withPackages(ModuleInfo moduleInfo, Path jar) throws IOException {
+        var packages = new LinkedHashSet<>(moduleInfo.packages());
+        if (!packages.addAll(packagesOf(jar))) {
+            return moduleInfo;
+        }
+        var merged = List.copyOf(packages);
+        return moduleInfo.with(mutable -> mutable.packages = new ArrayList<>(merged));
+    }
+
+    static SortedSet<String> packageNames(Path jar) throws IOException {
+        try (var channel = FileChannel.open(jar)) {
+            return packageNames(ZipCentralDirectory.read(ZipSource.of(channel)));
+        }
+    }
+
+    static SortedSet<String> packageNames(ZipCentralDirectory centralDirectory) {
+        var packages = new TreeSet<String>();
+        var headers = centralDirectory.headers();
+        // Entries of a package are usually next to each other, so the directory
+        // of the last class is compared as bytes before decoding a new one
+        int lastStart = -1;
+        int lastLength = -1;
+        for (int position = centralDirectory.firstHeader();
+             position != -1;
+             position = centralDirectory.nextHeader(position)) {
+            if (!centralDirectory.nameEndsWith(position, CLASS_SUFFIX)) {
+                continue;
+            }
+            int start = position + ZipCentralDirectory.CENTRAL_HEADER_SIZE;
+            int end = start + centralDirectory.nameLength(position);
+            if (startsWith(headers, start, end, VERSIONS)) {
+                int digits = start + VERSIONS.length;
+                int i = digits;
+                while (i < end && headers.get(i) >= '0' && headers.get(i) <= '9') {
+                    i++;
+                }
+                if (i == digits || i == end || headers.get(i) != '/') {
+                    continue;
+                }
+                start = i + 1;
+            }
+            if (startsWith(headers, start, end, META_INF)) {
+                continue;
+            }
+
+            int slash = -1;
+            for (int i = end - 1; i >= start; i--) {
+                if (headers.get(i) == '/') {
+                    slash = i;
+                    break;
+                }
+            }
+            if (slash < 0) {
+                continue;
+            }
+
+            int length = slash - start;
+            if (length == lastLength && headers.slice(start, length).equals(headers.slice(lastStart, length))) {
+                continue;
+            }
+            lastStart = start;
+            lastLength = length;
+
+            var directory = new byte[length];
+            headers.get(start, directory);
+            var package_ = new String(directory, StandardCharsets.UTF_8).replace('/', '.');
+            if (isPackageName(package_)) {
+                packages.add(package_);
+            }
+        }
+        return packages;
+    }
+
+    private static boolean startsWith(ByteBuffer headers, int start, int end, byte[] prefix) {
+        if (end - start < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (headers.get(start + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isPackageName(String name) {
+        int segmentStart = 0;
+        for (int i = 0; i <= name.length(); i++) {
+            if (i == name.length() || name.charAt(i) == '.') {
+                if (i == segmentStart) {
+                    return false;
+                }
+                segmentStart = i + 1;
+            }
+            else if (i == segmentStart
+                    ? !Character.isJavaIdentifierStart(name.charAt(i))
+                    : !Character.isJavaIdentifierPart(name.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static List<Package> toPackages(SortedSet<String> names) {
+        var packages = new ArrayList<Package>(names.size());
+        for (var name : names) {
+            packages.add(new Package(name));
+        }
+        return List.copyOf(packages);
+    }
+}
@@ -0,0 +1,273 @@
+package dev.mccue.module_info;
+
+import org.jspecify.annotations.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+
+/// The canonical SHA-256 digest behind {@link ModuleInfo#fingerprint()} and
+/// {@link ModuleInfoView#fingerprint()}, fed one part of a module at a time.
+///
+/// Every string is written as its UTF-8 length followed by its bytes. Each
+/// export, require, provide, use, package and hash is encoded on its own, and
+/// the encodings of a section are sorted before they go into the digest, so
+/// the order a module lists them in makes no difference. The implementations
+/// of a provide are the exception, since their order is the order a
+/// {@link java.util.ServiceLoader} finds them in. The targets of a qualified
+/// export are sorted too.
+///
+/// A `java.base` require is always counted as mandated and added when missing,
+/// as {@link ModuleInfo} does, so that the raw bytes of a `module-info.class`
+/// and the {@link ModuleInfo} read from them agree.
+final class ModuleFingerprint {
+    private static final HexFormat HEX = HexFormat.of();
+
+    // Sections, so that an element can't be mistaken for one of another kind
+    private static final int EXPORTS = 1;
+    private static final int REQUIRES = 2;
+    private static final int PROVIDES = 3;
+    private static final int USES = 4;
+    private static final int PACKAGES = 5;
+    private static final int HASHES = 6;
+
+    private final String name;
+    private final @Nullable String version;
+    private final int flags;
+    private final List<byte[]> exports = new ArrayList<>();
+    private final List<byte[]> requires = new ArrayList<>();
+    private final List<byte[]> provides = new ArrayList<>();
+    private final List<byte[]> uses = new ArrayList<>();
+    private final List<byte[]> packages = new ArrayList<>();
+    private final List<byte[]> hashes = new ArrayList<>();
+    private boolean requiresJavaBase;
+
+    private final Encoder encoder = new Encoder();
+
+    /// @param flags The module's `module_flags`.
+    ModuleFingerprint(String name, @Nullable String version, int flags) {
+        this.name = name;
+        this.version = version;
+        this.flags = flags;
+    }
+
+    static String of(ModuleInfo moduleInfo) {
+        var fingerprint = new ModuleFingerprint(
+                moduleInfo.name(),
+                moduleInfo.version().orElse(null),
+                flags(moduleInfo.open(), ClassFileModuleInfoView.ACC_OPEN)
+                        | flags(moduleInfo.synthetic(), ClassFileModuleInfoView.ACC_SYNTHETIC)
+                        | flags(moduleInfo.mandated(), ClassFileModuleInfoView.ACC_MANDATED)
+        );
+        for (var export : moduleInfo.exports()) {
+            var targets = new ArrayList<String>(export.to().size());
+            for (var to : export.to()) {
+                targets.add(to.module().name());
+            }
+            fingerprint.export(
+                    export.package_().name(),
+                    flags(export.synthetic(), ClassFileModuleInfoView.ACC_SYNTHETIC)
+                            | flags(export.mandated(), ClassFileModuleInfoView.ACC_MANDATED),
+                    targets
+            );
+        }
+        for (var require : moduleInfo.requires()) {
+            fingerprint.require(
+                    require.module().name(),
+                    require.version().orElse(null),
+                    flags(require.static_(), ClassFileModuleInfoView.ACC_STATIC_PHASE)
+                            | flags(require.transitive(), ClassFileModuleInfoView.ACC_TRANSITIVE)
+                            | flags(require.mandated(), ClassFileModuleInfoView.ACC_MANDATED)
+                            | flags(require.synthetic(), ClassFileModuleInfoView.ACC_SYNTHETIC)
+            );
+        }
+        for (var provide : moduleInfo.provides()) {
+            fingerprint.provide(provide.service(), provide.with());
+        }
+        for (var use : moduleInfo.uses()) {
+            fingerprint.use(use.service());
+        }
+        for (var package_ : moduleInfo.packages()) {
+            fingerprint.package_(package_.name());
+        }
+        for (var hash : moduleInfo.hashes()) {
+            for (var moduleHash : hash.hashes()) {
+                fingerprint.hash(hash.algorithm(), moduleHash.module().name(), moduleHash.hash());
+            }
+        }
+        return fingerprint.finish(moduleInfo.mainClass().orElse(null), moduleInfo.targetPlatform().orElse(null));
+    }
+
+    private static int flags(boolean set, int flag) {
+        return set ? flag : 0;
+    }
+
+    void export(String package_, int flags, List<String> targets) {
+        var sorted = targets.toArray(String[]::new);
+        Arrays.sort(sorted);
+        encoder.reset();
+        encoder.string(package_);
+        encoder.u2(flags);
+        encoder.u4(sorted.length);
+        for (var target : sorted) {
+            encoder.string(target);
+        }
+        exports.add(encoder.toByteArray());
+    }
+
+    void require(String module, @Nullable String version, int flags) {
+        if (module.equals("java.base")) {
+            requiresJavaBase = true;
+            flags |= ClassFileModuleInfoView.ACC_MANDATED;
+        }
+        encoder.reset();
+        encoder.string(module);
+        encoder.optional(version);
+        encoder.u2(flags);
+        requires.add(encoder.toByteArray());
+    }
+
+    void provide(String service, List<String> with) {
+        encoder.reset();
+        encoder.string(service);
+        encoder.u4(with.size());
+        for (var implementation : with) {
+            encoder.string(implementation);
+        }
+        provides.add(encoder.toByteArray());
+    }
+
+    void use(String service) {
+        encoder.reset();
+        encoder.string(service);
+        uses.add(encoder.toByteArray());
+    }
+
+    void package_(String package_) {
+        encoder.reset();
+        encoder.string(package_);
+        packages.add(encoder.toByteArray());
+    }
+
+    /// @param hash The hash as hex, in either case.
+    void hash(String algorithm, String module, String hash) {
+        encoder.reset();
+        encoder.string(algorithm);
+        encoder.string(module);
+        encoder.string(hash.toLowerCase(Locale.ROOT));
+        hashes.add(encoder.toByteArray());
+    }
+
+    void hash(String algorithm, String module, byte[] hash) {
+        hash(algorithm, module, HEX.formatHex(hash));
+    }
+
+    /// The digest as lowercase hex.
+    String finish(@Nullable String mainClass, @Nullable String targetPlatform) {
+        if (!requiresJavaBase && !name.equals("java.base")) {
+            require("java.base", null, ClassFileModuleInfoView.ACC_MANDATED);
+        }
+
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        encoder.reset();
+        encoder.string(name);
+        encoder.optional(version);
+        encoder.u2(flags);
+        encoder.optional(mainClass);
+        encoder.optional(targetPlatform);
+        encoder.update(digest);
+
+        section(digest, EXPORTS, exports);
+        section(digest, REQUIRES, requires);
+        section(digest, PROVIDES, provides);
+        section(digest, USES, uses);
+        section(digest, PACKAGES, packages);
+        section(digest, HASHES, hashes);
+        return HEX.formatHex(digest.digest());
+    }
+
+    private void section(MessageDigest digest, int tag, List<byte[]> elements) {
+        elements.sort(Arrays::compareUnsigned);
+        encoder.reset();
+        encoder.u1(tag);
+        encoder.u4(elements.size());
+        encoder.update(digest);
+        for (var element : elements) {
+            encoder.reset();
+            encoder.u4(element.length);
+            encoder.update(digest);
+            digest.update(element);
+        }
+    }
+
+    /// A growable big-endian buffer, reused for every element.
+    private static final class Encoder {
+        private byte[] bytes = new byte[64];
+        private int length;
+
+        void reset() {
+            length = 0;
+        }
+
+        void u1(int value) {
+            ensure(1);
+            bytes[length++] = (byte) value;
+        }
+
+        void u2(int value) {
+            ensure(2);
+            bytes[length++] = (byte) (value >>> 8);
+            bytes[length++] = (byte) value;
+        }
+
+        void u4(int value) {
+            ensure(4);
+            bytes[length++] = (byte) (value >>> 24);
+            bytes[length++] = (byte) (value >>> 16);
+            bytes[length++] = (byte) (value >>> 8);
+            bytes[length++] = (byte) value;
+        }
+
+        void string(String value) {
+            var utf8 = value.getBytes(StandardCharsets.UTF_8);
+            u4(utf8.length);
+            ensure(utf8.length);
+            System.arraycopy(utf8, 0, bytes, length, utf8.length);
+            length += utf8.length;
+        }
+
+        void optional(@Nullable String value) {
+            if (value == null) {
+                u1(0);
+            } else {
+                u1(1);
+                string(value);
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, length);
+        }
+
+        void update(MessageDigest digest) {
+            digest.update(bytes, 0, length);
+        }
+
+        private void ensure(int extra) {
+            if (length + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + extra));
+            }
+        }
+    }
+}
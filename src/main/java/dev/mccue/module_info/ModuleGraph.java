@@ -0,0 +1,346 @@
+package dev.mccue.module_info;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/// The graph formed by the `requires` of a set of modules, with readability and
+/// dependency closures computed up front.
+///
+/// Every module, including the ones that are required but were not given, gets
+/// a dense integer id. Closures are computed once per strongly connected
+/// component and stored as bitsets, so {@link #reads(String, String)},
+/// {@link #dependsOn(String, String)} and {@link #inCycle(String)} are a hash
+/// lookup and a bit test.
+///
+/// Readability follows the rules of the module system: a module reads every
+/// module it requires, and every module that those modules require transitively,
+/// and so on. Every module reads itself, though modules are not listed in their
+/// own {@link #readSet(String)}.
+///
+/// `requires static` edges are ignored unless the graph is built with
+/// `includeStatic`. At run time a static dependency is only read when something
+/// else caused it to be resolved, so which one to use depends on the question.
+public final class ModuleGraph {
+    private final String[] names;
+    private final Map<String, Integer> ids;
+    private final int presentCount;
+    private final BitSet[] requires;
+    private final BitSet[] reads;
+    private final BitSet[] reachable;
+    private final BitSet[] reachableFrom;
+    private final int[] component;
+    private final BitSet cyclic;
+
+    private ModuleGraph(Collection<ModuleInfo> modules, boolean includeStatic) {
+        var ids = new HashMap<String, Integer>();
+        var names = new ArrayList<String>();
+        for (var module : modules) {
+            if (ids.putIfAbsent(module.name(), names.size()) == null) {
+                names.add(module.name());
+            }
+        }
+        this.presentCount = names.size();
+
+        var infos = new ModuleInfo[presentCount];
+        for (var module : modules) {
+            int id = ids.get(module.name());
+            if (infos[id] == null) {
+                infos[id] = module;
+            }
+        }
+        for (var module : infos) {
+            for (var require : module.requires()) {
+                if (ids.putIfAbsent(require.module().name(), names.size()) == null) {
+                    names.add(require.module().name());
+                }
+            }
+        }
+
+        int n = names.size();
+        this.names = names.toArray(String[]::new);
+        this.ids = ids;
+
+        this.requires = new BitSet[n];
+        var requiresTransitive = new BitSet[n];
+        for (int i = 0; i < n; i++) {
+            requires[i] = new BitSet();
+            requiresTransitive[i] = new BitSet();
+        }
+        for (int i = 0; i < presentCount; i++) {
+            for (var require : infos[i].requires()) {
+                if (require.static_() && !includeStatic) {
+                    continue;
+                }
+                int target = ids.get(require.module().name());
+                requires[i].set(target);
+                if (require.transitive()) {
+                    requiresTransitive[i].set(target);
+                }
+            }
+        }
+
+        this.component = new int[n];
+        int componentCount = stronglyConnectedComponents(requires, component);
+        this.cyclic = new BitSet(n);
+        var componentSizes = new int[componentCount];
+        for (int i = 0; i < n; i++) {
+            componentSizes[component[i]]++;
+        }
+        for (int i = 0; i < n; i++) {
+            if (componentSizes[component[i]] > 1 || requires[i].get(i)) {
+                cyclic.set(i);
+            }
+        }
+
+        this.reachable = closure(requires, component, componentCount);
+
+        var reversed = new BitSet[n];
+        for (int i = 0; i < n; i++) {
+            reversed[i] = new BitSet();
+        }
+        for (int i = 0; i < n; i++) {
+            for (int j = requires[i].nextSetBit(0); j >= 0; j = requires[i].nextSetBit(j + 1)) {
+                reversed[j].set(i);
+            }
+        }
+        var reversedComponent = new int[n];
+        this.reachableFrom = closure(
+                reversed,
+                reversedComponent,
+                stronglyConnectedComponents(reversed, reversedComponent)
+        );
+
+        // A module reads everything that the modules it requires imply
+        // readability of, through any chain of requires transitive
+        var impliedComponent = new int[n];
+        var implied = closure(
+                requiresTransitive,
+                impliedComponent,
+                stronglyConnectedComponents(requiresTransitive, impliedComponent)
+        );
+        this.reads = new BitSet[n];
+        for (int i = 0; i < n; i++) {
+            reads[i] = new BitSet();
+            for (int j = requires[i].nextSetBit(0); j >= 0; j = requires[i].nextSetBit(j + 1)) {
+                reads[i].or(implied[j]);
+            }
+            reads[i].clear(i);
+        }
+    }
+
+    public static ModuleGraph of(Collection<ModuleInfo> modules) {
+        return new ModuleGraph(modules, false);
+    }
+
+    public static ModuleGraph of(Collection<ModuleInfo> modules, boolean includeStatic) {
+        return new ModuleGraph(modules, includeStatic);
+    }
+
+    /// The number of modules in the graph, including missing ones.
+    public int size() {
+        return names.length;
+    }
+
+    /// Whether the module was one of the ones the graph was built from.
+    public boolean contains(String module) {
+        var id = ids.get(module);
+        return id != null && id < presentCount;
+    }
+
+    /// Modules that are required but that the graph was not given.
+    public Set<String> missing() {
+        var missing = new LinkedHashSet<String>();
+        for (int i = presentCount; i < names.length; i++) {
+            missing.add(names[i]);
+        }
+        return Collections.unmodifiableSet(missing);
+    }
+
+    /// Whether `from` reads `to`.
+    public boolean reads(String from, String to) {
+        int fromId = id(from);
+        int toId = id(to);
+        if (fromId < 0 || toId < 0) {
+            return false;
+        }
+        return fromId == toId || reads[fromId].get(toId);
+    }
+
+    /// Every module `module` reads, other than itself.
+    public Set<String> readSet(String module) {
+        int id = id(module);
+        return id < 0 ? Set.of() : names(reads[id], -1);
+    }
+
+    /// The modules `module` directly requires.
+    public Set<String> requires(String module) {
+        int id = id(module);
+        return id < 0 ? Set.of() : names(requires[id], -1);
+    }
+
+    /// Whether `to` can be reached from `from` by following one or more requires.
+    public boolean dependsOn(String from, String to) {
+        int fromId = id(from);
+        int toId = id(to);
+        if (fromId < 0 || toId < 0) {
+            return false;
+        }
+        return (fromId != toId || cyclic.get(fromId)) && reachable[fromId].get(toId);
+    }
+
+    /// Every module that can be reached from `module` by following one or more requires.
+    public Set<String> dependencies(String module) {
+        int id = id(module);
+        return id < 0 ? Set.of() : names(reachable[id], cyclic.get(id) ? -1 : id);
+    }
+
+    /// Every module that can reach `module` by following one or more requires.
+    public Set<String> dependents(String module) {
+        int id = id(module);
+        return id < 0 ? Set.of() : names(reachableFrom[id], cyclic.get(id) ? -1 : id);
+    }
+
+    /// Whether the module is part of a requires cycle, including requiring itself.
+    public boolean inCycle(String module) {
+        int id = id(module);
+        return id >= 0 && cyclic.get(id);
+    }
+
+    /// Every requires cycle, as the set of modules that take part in it.
+    public List<Set<String>> cycles() {
+        var members = new HashMap<Integer, BitSet>();
+        for (int i = cyclic.nextSetBit(0); i >= 0; i = cyclic.nextSetBit(i + 1)) {
+            members.computeIfAbsent(component[i], ignored -> new BitSet()).set(i);
+        }
+        var cycles = new ArrayList<Set<String>>();
+        for (var cycle : members.values()) {
+            cycles.add(names(cycle, -1));
+        }
+        cycles.sort((a, b) -> Integer.compare(
+                ids.get(a.iterator().next()),
+                ids.get(b.iterator().next())
+        ));
+        return List.copyOf(cycles);
+    }
+
+    private int id(String module) {
+        var id = ids.get(module);
+        return id == null ? -1 : id;
+    }
+
+    private Set<String> names(BitSet bits, int exclude) {
+        var names = new LinkedHashSet<String>();
+        for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+            if (i != exclude) {
+                names.add(this.names[i]);
+            }
+        }
+        return Collections.unmodifiableSet(names);
+    }
+
+    /// Tarjan's algorithm, without recursion so that long chains of modules
+    /// can't overflow the stack.
+    ///
+    /// Fills `component` and returns the number of components. Components are
+    /// numbered in reverse topological order, so every edge goes from a component
+    /// to one with the same or a lower number.
+    private static int stronglyConnectedComponents(BitSet[] edges, int[] component) {
+        int n = edges.length;
+        var index = new int[n];
+        var lowLink = new int[n];
+        var nextEdge = new int[n];
+        var onStack = new boolean[n];
+        var stack = new int[n];
+        var callStack = new int[n];
+        Arrays.fill(index, -1);
+
+        int stackSize = 0;
+        int nextIndex = 0;
+        int componentCount = 0;
+        for (int root = 0; root < n; root++) {
+            if (index[root] != -1) {
+                continue;
+            }
+
+            int depth = 0;
+            callStack[depth++] = root;
+            index[root] = lowLink[root] = nextIndex++;
+            stack[stackSize++] = root;
+            onStack[root] = true;
+
+            while (depth > 0) {
+                int v = callStack[depth - 1];
+                int w = edges[v].nextSetBit(nextEdge[v]);
+                if (w >= 0) {
+                    nextEdge[v] = w + 1;
+                    if (index[w] == -1) {
+                        index[w] = lowLink[w] = nextIndex++;
+                        stack[stackSize++] = w;
+                        onStack[w] = true;
+                        callStack[depth++] = w;
+                    } else if (onStack[w]) {
+                        lowLink[v] = Math.min(lowLink[v], index[w]);
+                    }
+                    continue;
+                }
+
+                depth--;
+                if (lowLink[v] == index[v]) {
+                    int member;
+                    do {
+                        member = stack[--stackSize];
+                        onStack[member] = false;
+                        component[member] = componentCount;
+                    } while (member != v);
+                    componentCount++;
+                }
+                if (depth > 0) {
+                    int parent = callStack[depth - 1];
+                    lowLink[parent] = Math.min(lowLink[parent], lowLink[v]);
+                }
+            }
+        }
+        return componentCount;
+    }
+
+    /// The reflexive transitive closure of `edges`. Members of the same component
+    /// share a single bitset.
+    private static BitSet[] closure(BitSet[] edges, int[] component, int componentCount) {
+        int n = edges.length;
+        var membersByComponent = new BitSet[componentCount];
+        for (int i = 0; i < componentCount; i++) {
+            membersByComponent[i] = new BitSet();
+        }
+        for (int i = 0; i < n; i++) {
+            membersByComponent[component[i]].set(i);
+        }
+
+        var componentClosure = new BitSet[componentCount];
+        for (int c = 0; c < componentCount; c++) {
+            var closure = (BitSet) membersByComponent[c].clone();
+            var members = membersByComponent[c];
+            for (int v = members.nextSetBit(0); v >= 0; v = members.nextSetBit(v + 1)) {
+                for (int w = edges[v].nextSetBit(0); w >= 0; w = edges[v].nextSetBit(w + 1)) {
+                    if (component[w] != c) {
+                        closure.or(componentClosure[component[w]]);
+                    }
+                }
+            }
+            componentClosure[c] = closure;
+        }
+
+        var closures = new BitSet[n];
+        for (int i = 0; i < n; i++) {
+            closures[i] = componentClosure[component[i]];
+        }
+        return closures;
+    }
+}
@@ -0,0 +1,216 @@
+package dev.mccue.module_info;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/// Computes the hashes that `jmod --hash-modules` and `jlink` record in the
+/// `ModuleHashes` attribute of a module.
+///
+/// A module records the hash of every packaged module that depends on it,
+/// directly or through other modules, so that those modules can't later be
+/// swapped out for ones that were not built against it. Each hash is computed
+/// the way the JDK computes it: over the names of the module's resources, in
+/// sorted order, each name's UTF-8 bytes followed by the resource's content.
+/// The resources of a jmod are the entries of its `classes` section, named
+/// without the `classes/` prefix, and those of a jar are its entries as the
+/// running JDK sees them, so a multi-release jar is read at the runtime version.
+///
+/// Modules are digested on virtual threads, with at most {@link #maxOpenFiles()}
+/// open at any one time, and read buffers are reused between them.
+public final class ModuleHasher {
+    private static final String DEFAULT_ALGORITHM = "SHA-256";
+    private static final int DEFAULT_MAX_OPEN_FILES = 64;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final String JMOD_CLASSES = "classes/";
+
+    private final String algorithm;
+    private final int maxOpenFiles;
+    private final ConcurrentLinkedQueue<byte[]> buffers = new ConcurrentLinkedQueue<>();
+
+    private ModuleHasher(String algorithm, int maxOpenFiles) {
+        if (maxOpenFiles < 1) {
+            throw new IllegalArgumentException("maxOpenFiles must be positive: " + maxOpenFiles);
+        }
+        this.algorithm = Objects.requireNonNull(algorithm);
+        this.maxOpenFiles = maxOpenFiles;
+        newDigest();
+    }
+
+    /// A hasher using `SHA-256`, the algorithm the JDK tools use.
+    public static ModuleHasher of() {
+        return new ModuleHasher(DEFAULT_ALGORITHM, DEFAULT_MAX_OPEN_FILES);
+    }
+
+    public static ModuleHasher of(String algorithm) {
+        return new ModuleHasher(algorithm, DEFAULT_MAX_OPEN_FILES);
+    }
+
+    public static ModuleHasher of(String algorithm, int maxOpenFiles) {
+        return new ModuleHasher(algorithm, maxOpenFiles);
+    }
+
+    public String algorithm() {
+        return algorithm;
+    }
+
+    public int maxOpenFiles() {
+        return maxOpenFiles;
+    }
+
+    /// Hashes every module on `modulePath` that depends on `root`, ordered by module name.
+    ///
+    /// `root` takes the place of any module with the same name on the module path.
+    /// Exploded modules are left out, as they are by the JDK tools, and `requires static`
+    /// is not followed.
+    ///
+    /// @throws IOException If any entry of the module path could not be read.
+    public Hash hash(ModuleInfo root, List<Path> modulePath) throws IOException, InterruptedException {
+        var scan = ModulePathScanner.of(maxOpenFiles).scan(modulePath);
+        var failures = scan.failures();
+        if (!failures.isEmpty()) {
+            var failure = failures.getFirst();
+            throw new IOException("Could not read " + failure.path(), failure.error());
+        }
+
+        var modules = new LinkedHashMap<>(scan.modules());
+        modules.put(root.name(), root);
+        var graph = ModuleGraph.of(modules.values());
+
+        var files = new TreeMap<String, Path>();
+        for (var dependent : graph.dependents(root.name())) {
+            var location = scan.locations().get(dependent);
+            if (location != null && !dependent.equals(root.name()) && Files.isRegularFile(location)) {
+                files.put(dependent, location);
+            }
+        }
+        return hash(files);
+    }
+
+    /// Hashes the given jars and jmods, keeping the order of `modules`.
+    public Hash hash(Map<String, Path> modules) throws IOException, InterruptedException {
+        var openFiles = new Semaphore(maxOpenFiles);
+        var hashes = new ArrayList<ModuleHash>(modules.size());
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var futures = new ArrayList<Future<ModuleHash>>(modules.size());
+            for (var module : modules.entrySet()) {
+                var name = new Module(module.getKey());
+                var file = module.getValue();
+                futures.add(executor.submit(() -> {
+                    openFiles.acquire();
+                    try {
+                        return new ModuleHash(name, digest(file));
+                    } finally {
+                        openFiles.release();
+                    }
+                }));
+            }
+
+            for (var future : futures) {
+                try {
+                    hashes.add(future.get());
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof InterruptedException interrupted) {
+                        throw interrupted;
+                    }
+                    if (e.getCause() instanceof IOException io) {
+                        throw io;
+                    }
+                    if (e.getCause() instanceof Error error) {
+                        throw error;
+                    }
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+        }
+        return new Hash(algorithm, hashes);
+    }
+
+    /// Sets the `ModuleHashes` of `moduleInfoClass` to the hashes of the modules on
+    /// `modulePath` that depend on it, leaving the rest of the class file as it was.
+    ///
+    /// @see ModuleInfo#patch(byte[], java.util.function.Consumer)
+    public byte[] hashInto(byte[] moduleInfoClass, List<Path> modulePath) throws IOException, InterruptedException {
+        var hash = hash(ModuleInfo.fromBytes(moduleInfoClass), modulePath);
+        return ModuleInfo.patch(moduleInfoClass, moduleInfo ->
+                moduleInfo.hashes = hash.hashes().isEmpty() ? List.of() : List.of(hash)
+        );
+    }
+
+    private String digest(Path file) throws IOException {
+        var digest = newDigest();
+        var buffer = buffers.poll();
+        if (buffer == null) {
+            buffer = new byte[BUFFER_SIZE];
+        }
+        try {
+            if (file.getFileName().toString().endsWith(".jmod")) {
+                try (var jmod = new ZipFile(file.toFile())) {
+                    var entries = new TreeMap<String, ZipEntry>();
+                    for (var entry : Collections.list(jmod.entries())) {
+                        if (entry.getName().startsWith(JMOD_CLASSES)) {
+                            entries.put(entry.getName().substring(JMOD_CLASSES.length()), entry);
+                        }
+                    }
+                    for (var entry : entries.entrySet()) {
+                        digest(digest, entry.getKey(), jmod.getInputStream(entry.getValue()), buffer);
+                    }
+                }
+            } else {
+                try (var jar = new JarFile(file.toFile(), false, ZipFile.OPEN_READ, JarFile.runtimeVersion())) {
+                    var names = jar.versionedStream().map(JarEntry::getName).sorted().toList();
+                    for (var name : names) {
+                        digest(digest, name, jar.getInputStream(jar.getJarEntry(name)), buffer);
+                    }
+                }
+            }
+        } finally {
+            buffers.offer(buffer);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static void digest(
+            MessageDigest digest,
+            String name,
+            InputStream content,
+            byte[] buffer
+    ) throws IOException {
+        digest.update(name.getBytes(StandardCharsets.UTF_8));
+        try (content) {
+            int read;
+            while ((read = content.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+    }
+
+    private MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException("Unknown digest algorithm: " + algorithm, e);
+        }
+    }
+}
@@ -1,20 +1,29 @@
 package dev.mccue.module_info;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
+import org.jspecify.annotations.Nullable;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.lang.classfile.ClassBuilder;
+import java.lang.classfile.ClassElement;
 import java.lang.classfile.ClassFile;
 import java.lang.classfile.ClassModel;
+import java.lang.classfile.ClassTransform;
 import java.lang.classfile.attribute.*;
-import java.lang.classfile.constantpool.Utf8Entry;
+import java.lang.classfile.constantpool.ClassEntry;
 import java.lang.constant.ClassDesc;
+import java.lang.module.ModuleDescriptor;
 import java.lang.constant.ModuleDesc;
 import java.lang.constant.PackageDesc;
 import java.lang.reflect.AccessFlag;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
-import java.util.jar.JarEntry;
+import java.util.function.UnaryOperator;
 import java.util.jar.JarInputStream;
 import java.util.regex.Pattern;
 import java.util.zip.ZipEntry;
@@ -38,6 +47,22 @@ public record ModuleInfo(
         Optional<String> mainClass,
         Optional<String> targetPlatform
 ) {
+    /// The release a root `module-info.class` is keyed by in {@link #allVersions(ZipFile)},
+    /// the same as {@link java.util.jar.JarFile#baseVersion()}.
+    public static final int BASE_RELEASE = 8;
+
+    /// Immutable and safe to share, so it is made once rather than on every parse.
+    private static final ClassFile CLASS_FILE = ClassFile.of();
+    private static final HexFormat HEX = HexFormat.of();
+
+    private static final Require MANDATED_JAVA_BASE = new Require(
+            new Module("java.base"),
+            Optional.empty(),
+            false,
+            false,
+            true,
+            false
+    );
 
     public ModuleInfo(
             String name,
@@ -56,11 +81,36 @@ public record ModuleInfo(
     ) {
         this.name = Objects.requireNonNull(name);
         this.exports = List.copyOf(exports);
+        this.requires = normalizeRequires(name, requires);
+        this.provides = List.copyOf(provides);
+        this.uses = List.copyOf(uses);
+        this.version = Objects.requireNonNull(version);
+        this.open = open;
+        this.synthetic = synthetic;
+        this.mandated = mandated;
+        this.packages = List.copyOf(packages);
+        this.hashes = List.copyOf(hashes);
+        this.mainClass = Objects.requireNonNull(mainClass);
+        this.targetPlatform = Objects.requireNonNull(targetPlatform);
+    }
 
-
-        // We want every module to have a java.base require that is mandated, regardless
-        // of if that is actually declared (...except for modules which themselves are java.base)
+    /// We want every module to have a java.base require that is mandated, regardless
+    /// of if that is actually declared (...except for modules which themselves are java.base)
+    static List<Require> normalizeRequires(String name, List<Require> requires) {
+        // Usually there is nothing to fix, and then an immutable list is kept as is
         boolean foundJavaBase = false;
+        boolean unmandated = false;
+        for (var require : requires) {
+            if (require.module().name().equals("java.base")) {
+                foundJavaBase = true;
+                unmandated |= !require.mandated();
+            }
+        }
+        if (!unmandated && (foundJavaBase || name.equals("java.base"))) {
+            return List.copyOf(requires);
+        }
+
+        foundJavaBase = false;
         requires = new ArrayList<>(requires);
         for (int i = 0; i < requires.size(); i++) {
             var require = requires.get(i);
@@ -72,21 +122,10 @@ public record ModuleInfo(
             }
         }
         if (!name.equals("java.base") && !foundJavaBase) {
-            requires.addFirst(new Require("java.base")
-                    .with(r -> r.mandated = true));
+            requires.addFirst(MANDATED_JAVA_BASE);
         }
 
-        this.requires = List.copyOf(requires);
-        this.provides = List.copyOf(provides);
-        this.uses = List.copyOf(uses);
-        this.version = Objects.requireNonNull(version);
-        this.open = open;
-        this.synthetic = synthetic;
-        this.mandated = mandated;
-        this.packages = List.copyOf(packages);
-        this.hashes = List.copyOf(hashes);
-        this.mainClass = Objects.requireNonNull(mainClass);
-        this.targetPlatform = Objects.requireNonNull(targetPlatform);
+        return List.copyOf(requires);
     }
 
     public ModuleInfo(String name) {
@@ -113,71 +152,694 @@ public record ModuleInfo(
         return mutable.freeze();
     }
 
+    public static Builder builder(String name) {
+        return new Builder(new ModuleInfo(name));
+    }
+
+    public Builder toBuilder() {
+        return new Builder(this);
+    }
+
+    /// Applies every edit to one {@link Builder}, in order, and builds the result once.
+    ///
+    /// This is the same as chaining {@link #with(Consumer)} calls, except that the
+    /// lists are only copied into the new module info at the end.
+    public ModuleInfo transform(List<? extends Consumer<? super Builder>> edits) {
+        var builder = toBuilder();
+        for (var edit : edits) {
+            edit.accept(builder);
+        }
+        return builder.build();
+    }
+
+    /// Builds a {@link ModuleInfo} through any number of edits.
+    ///
+    /// Exports, requires, provides, uses and packages are each kept in insertion
+    /// order and keyed by package, module or service name. Adding one with a key
+    /// that is already present replaces it in place, so there are never duplicates,
+    /// and adding, removing and replacing are all constant time. Nothing is copied
+    /// into a {@link ModuleInfo} until {@link #build()}, after which the builder can't
+    /// be used again.
+    public static final class Builder {
+        private String name;
+        private final LinkedHashMap<String, Export> exports = new LinkedHashMap<>();
+        private final LinkedHashMap<String, Require> requires = new LinkedHashMap<>();
+        private final LinkedHashMap<String, Provide> provides = new LinkedHashMap<>();
+        private final LinkedHashMap<String, Use> uses = new LinkedHashMap<>();
+        private Optional<String> version;
+        private boolean open;
+        private boolean synthetic;
+        private boolean mandated;
+        private final LinkedHashMap<String, Package> packages = new LinkedHashMap<>();
+        private final ArrayList<Hash> hashes;
+        private Optional<String> mainClass;
+        private Optional<String> targetPlatform;
+        private boolean built;
+
+        private Builder(ModuleInfo moduleInfo) {
+            this.name = moduleInfo.name;
+            for (var export : moduleInfo.exports) {
+                exports.put(export.package_().name(), export);
+            }
+            for (var require : moduleInfo.requires) {
+                requires.put(require.module().name(), require);
+            }
+            for (var provide : moduleInfo.provides) {
+                provides.put(provide.service(), provide);
+            }
+            for (var use : moduleInfo.uses) {
+                uses.put(use.service(), use);
+            }
+            this.version = moduleInfo.version;
+            this.open = moduleInfo.open;
+            this.synthetic = moduleInfo.synthetic;
+            this.mandated = moduleInfo.mandated;
+            for (var package_ : moduleInfo.packages) {
+                packages.put(package_.name(), package_);
+            }
+            this.hashes = new ArrayList<>(moduleInfo.hashes);
+            this.mainClass = moduleInfo.mainClass;
+            this.targetPlatform = moduleInfo.targetPlatform;
+        }
+
+        public Builder name(String name) {
+            checkNotBuilt();
+            this.name = Objects.requireNonNull(name);
+            return this;
+        }
+
+        public Builder version(Optional<String> version) {
+            checkNotBuilt();
+            this.version = Objects.requireNonNull(version);
+            return this;
+        }
+
+        public Builder version(String version) {
+            return version(Optional.of(version));
+        }
+
+        public Builder open(boolean open) {
+            checkNotBuilt();
+            this.open = open;
+            return this;
+        }
+
+        public Builder synthetic(boolean synthetic) {
+            checkNotBuilt();
+            this.synthetic = synthetic;
+            return this;
+        }
+
+        public Builder mandated(boolean mandated) {
+            checkNotBuilt();
+            this.mandated = mandated;
+            return this;
+        }
+
+        public Builder mainClass(Optional<String> mainClass) {
+            checkNotBuilt();
+            this.mainClass = Objects.requireNonNull(mainClass);
+            return this;
+        }
+
+        public Builder mainClass(String mainClass) {
+            return mainClass(Optional.of(mainClass));
+        }
+
+        public Builder targetPlatform(Optional<String> targetPlatform) {
+            checkNotBuilt();
+            this.targetPlatform = Objects.requireNonNull(targetPlatform);
+            return this;
+        }
+
+        public Builder targetPlatform(String targetPlatform) {
+            return targetPlatform(Optional.of(targetPlatform));
+        }
+
+        /// Adds `export`, replacing any export of the same package.
+        public Builder addExport(Export export) {
+            checkNotBuilt();
+            exports.put(export.package_().name(), export);
+            return this;
+        }
+
+        public Builder removeExport(String package_) {
+            checkNotBuilt();
+            exports.remove(package_);
+            return this;
+        }
+
+        /// Replaces the export of `package_`, if there is one, with the result of `replacement`.
+        public Builder replaceExport(String package_, UnaryOperator<Export> replacement) {
+            checkNotBuilt();
+            var export = exports.get(package_);
+            if (export != null) {
+                var replaced = replacement.apply(export);
+                if (replaced.package_().name().equals(package_)) {
+                    exports.put(package_, replaced);
+                } else {
+                    exports.remove(package_);
+                    exports.put(replaced.package_().name(), replaced);
+                }
+            }
+            return this;
+        }
+
+        /// Adds `require`, replacing any require of the same module.
+        public Builder addRequire(Require require) {
+            checkNotBuilt();
+            requires.put(require.module().name(), require);
+            return this;
+        }
+
+        public Builder removeRequire(String module) {
+            checkNotBuilt();
+            requires.remove(module);
+            return this;
+        }
+
+        /// Replaces the require of `module`, if there is one, with the result of `replacement`.
+        public Builder replaceRequire(String module, UnaryOperator<Require> replacement) {
+            checkNotBuilt();
+            var require = requires.get(module);
+            if (require != null) {
+                var replaced = replacement.apply(require);
+                if (replaced.module().name().equals(module)) {
+                    requires.put(module, replaced);
+                } else {
+                    requires.remove(module);
+                    requires.put(replaced.module().name(), replaced);
+                }
+            }
+            return this;
+        }
+
+        /// Adds `provide`, replacing any provide of the same service.
+        public Builder addProvide(Provide provide) {
+            checkNotBuilt();
+            provides.put(provide.service(), provide);
+            return this;
+        }
+
+        public Builder removeProvide(String service) {
+            checkNotBuilt();
+            provides.remove(service);
+            return this;
+        }
+
+        /// Replaces the provide of `service`, if there is one, with the result of `replacement`.
+        public Builder replaceProvide(String service, UnaryOperator<Provide> replacement) {
+            checkNotBuilt();
+            var provide = provides.get(service);
+            if (provide != null) {
+                var replaced = replacement.apply(provide);
+                if (replaced.service().equals(service)) {
+                    provides.put(service, replaced);
+                } else {
+                    provides.remove(service);
+                    provides.put(replaced.service(), replaced);
+                }
+            }
+            return this;
+        }
+
+        public Builder addUse(Use use) {
+            checkNotBuilt();
+            uses.put(use.service(), use);
+            return this;
+        }
+
+        public Builder removeUse(String service) {
+            checkNotBuilt();
+            uses.remove(service);
+            return this;
+        }
+
+        public Builder addPackage(Package package_) {
+            checkNotBuilt();
+            packages.put(package_.name(), package_);
+            return this;
+        }
+
+        public Builder removePackage(String package_) {
+            checkNotBuilt();
+            packages.remove(package_);
+            return this;
+        }
+
+        public Builder hashes(List<Hash> hashes) {
+            checkNotBuilt();
+            this.hashes.clear();
+            this.hashes.addAll(hashes);
+            return this;
+        }
+
+        public boolean exports(String package_) {
+            return exports.containsKey(package_);
+        }
+
+        public boolean requires(String module) {
+            return requires.containsKey(module);
+        }
+
+        public boolean provides(String service) {
+            return provides.containsKey(service);
+        }
+
+        public boolean uses(String service) {
+            return uses.containsKey(service);
+        }
+
+        /// @throws IllegalStateException If the builder has already been built.
+        public ModuleInfo build() {
+            checkNotBuilt();
+            built = true;
+            return new ModuleInfo(
+                    name,
+                    List.copyOf(exports.values()),
+                    List.copyOf(requires.values()),
+                    List.copyOf(provides.values()),
+                    List.copyOf(uses.values()),
+                    version,
+                    open,
+                    synthetic,
+                    mandated,
+                    List.copyOf(packages.values()),
+                    hashes,
+                    mainClass,
+                    targetPlatform
+            );
+        }
+
+        private void checkNotBuilt() {
+            if (built) {
+                throw new IllegalStateException("Builder has already been built.");
+            }
+        }
+    }
+
+    /// Parses a `module-info.class`.
+    ///
+    /// This and every other `fromBytes` and `from` method that reads a class
+    /// file, except {@link #from(ClassModel)}, parse with the same hand-written
+    /// reader rather than {@link ClassFile}, so they give the same result and
+    /// reject the same malformed input.
+    ///
+    /// @throws IllegalArgumentException If the bytes are not a well-formed `module-info.class`.
     public static ModuleInfo fromBytes(byte[] bytes) {
-        var classModel = ClassFile.of()
-                .parse(bytes);
-        return from(classModel);
+        return fromBytes(bytes, NamePool.NONE);
+    }
+
+    static ModuleInfo fromBytes(byte[] bytes, NamePool pool) {
+        return fromBytes(ByteBuffer.wrap(bytes), pool);
+    }
+
+    /// Parses the `module-info.class` between the buffer's position and limit,
+    /// straight from the buffer, as {@link #fromBytes(byte[])} does.
+    ///
+    /// The buffer's position is not changed, and the result does not refer to
+    /// the buffer, so it can be reused as soon as this returns.
+    ///
+    /// @throws IllegalArgumentException If the bytes are not a well-formed `module-info.class`.
+    public static ModuleInfo fromBytes(ByteBuffer bytes) {
+        return fromBytes(bytes, NamePool.NONE);
+    }
+
+    static ModuleInfo fromBytes(ByteBuffer bytes, NamePool pool) {
+        return parse(bytes, pool).moduleInfo();
+    }
+
+    /// Like {@link #fromBytes(ByteBuffer)}, also giving the opens of the module.
+    static ParsedModule parse(ByteBuffer bytes, NamePool pool) {
+        var recording = ParseRecording.begin();
+        int length = bytes.remaining();
+        var view = new ClassFileModuleInfoView(bytes.slice());
+        var moduleInfo = view.toModuleInfo(pool);
+        var opens = view.opens();
+        recording.end(moduleInfo.name, length);
+        return new ParsedModule(moduleInfo, opens);
+    }
+
+    static ParsedModule parse(byte[] bytes) {
+        return parse(ByteBuffer.wrap(bytes), NamePool.NONE);
     }
 
     private static final Predicate<String> ROOT_MODULE_INFO_PATTERN = Pattern.compile("(classes/|)module-info.class")
             .asMatchPredicate();
-    private static final Predicate<String> MULTI_RELEASE_MODULE_INFO_PATTERN = Pattern.compile("(classes/|)META-INF/versions/([0-9]+)/module-info.class")
-            .asMatchPredicate();
+    private static final Pattern MULTI_RELEASE_MODULE_INFO = Pattern.compile("(classes/|)META-INF/versions/([0-9]+)/module-info.class");
 
+    /// The module info of a jar or jmod: its root `module-info.class`, or when it
+    /// has none, the versioned one for the highest release in {@link #allVersions(ZipFile)}.
     public static Optional<ModuleInfo> from(ZipFile jarFile) throws IOException {
-        var entries = jarFile.entries();
+        return from(jarFile, NamePool.NONE);
+    }
 
-        boolean foundRoot = false;
-        ZipEntry entryToUse = null;
+    static Optional<ModuleInfo> from(ZipFile jarFile, NamePool pool) throws IOException {
+        return parse(jarFile, pool).map(ParsedModule::moduleInfo);
+    }
+
+    /// Like {@link #from(ZipFile)}, also giving the opens of the module.
+    static Optional<ParsedModule> parse(ZipFile jarFile, NamePool pool) throws IOException {
+        var recording = JarScanRecording.begin();
+        var versionedEntries = versionedEntries(jarFile);
+        var entryToUse = preferredEntry(versionedEntries.entries());
+        Optional<ParsedModule> parsed = Optional.empty();
+        long moduleInfoBytes = 0;
+        long inflateNanos = 0;
+        long parseNanos = 0;
+        if (entryToUse != null) {
+            var read = readEntry(jarFile, entryToUse, pool, recording);
+            parsed = Optional.of(read.parsed());
+            moduleInfoBytes = read.length();
+            inflateNanos = read.inflateNanos();
+            parseNanos = read.parseNanos();
+        }
+
+        var entryName = entryToUse == null ? null : entryToUse.getName();
+        recording.complete(
+                JarScanRecording.ZIP_FILE, jarFile.getName(), versionedEntries.entriesVisited(),
+                entryName, moduleInfoBytes, -1, inflateNanos, parseNanos
+        );
+        return parsed;
+    }
+
+    /// Every `module-info.class` in a jar or jmod, keyed by the first release it
+    /// applies to.
+    ///
+    /// The root `module-info.class` is keyed by {@link #BASE_RELEASE} and each
+    /// `META-INF/versions/N/module-info.class` by `N`, with versions below 9
+    /// ignored as {@link java.util.jar.JarFile} ignores them. Like
+    /// {@link #from(ZipFile)}, this does not check that the manifest says the
+    /// jar is `Multi-Release`. The entries are found in a single pass over the
+    /// jar's entries, and each one is then parsed.
+    public static NavigableMap<Integer, ModuleInfo> allVersions(ZipFile jarFile) throws IOException {
+        return allVersions(jarFile, NamePool.NONE);
+    }
+
+    static NavigableMap<Integer, ModuleInfo> allVersions(ZipFile jarFile, NamePool pool) throws IOException {
+        var recording = JarScanRecording.begin();
+        var versionedEntries = versionedEntries(jarFile);
+        var versions = new TreeMap<Integer, ModuleInfo>();
+        long moduleInfoBytes = 0;
+        long inflateNanos = 0;
+        long parseNanos = 0;
+        for (var version : versionedEntries.entries().entrySet()) {
+            var read = readEntry(jarFile, version.getValue(), pool, recording);
+            versions.put(version.getKey(), read.parsed().moduleInfo());
+            moduleInfoBytes += read.length();
+            inflateNanos += read.inflateNanos();
+            parseNanos += read.parseNanos();
+        }
+
+        // Every entry was read, so the one reported is the highest version
+        var entries = versionedEntries.entries();
+        var entryName = entries.isEmpty() ? null : entries.lastEntry().getValue().getName();
+        recording.complete(
+                JarScanRecording.ZIP_FILE, jarFile.getName(), versionedEntries.entriesVisited(),
+                entryName, moduleInfoBytes, -1, inflateNanos, parseNanos
+        );
+        return Collections.unmodifiableNavigableMap(versions);
+    }
+
+    /// The module info a runtime of `release` would see in a jar or jmod: the
+    /// entry with the highest version in {@link #allVersions(ZipFile)} that is
+    /// not above `release`'s feature version. Releases before {@link #BASE_RELEASE}
+    /// are treated as {@link #BASE_RELEASE}, and so see the root entry.
+    ///
+    /// The entries are found in a single pass over the jar's entries, and only
+    /// the chosen one is parsed.
+    public static Optional<ModuleInfo> from(ZipFile jarFile, Runtime.Version release) throws IOException {
+        return from(jarFile, release, NamePool.NONE);
+    }
+
+    static Optional<ModuleInfo> from(ZipFile jarFile, Runtime.Version release, NamePool pool) throws IOException {
+        var recording = JarScanRecording.begin();
+        var versionedEntries = versionedEntries(jarFile);
+        var entry = versionedEntries.entries().floorEntry(Math.max(release.feature(), BASE_RELEASE));
+        Optional<ModuleInfo> moduleInfo = Optional.empty();
+        String entryName = null;
+        long moduleInfoBytes = 0;
+        long inflateNanos = 0;
+        long parseNanos = 0;
+        if (entry != null) {
+            var read = readEntry(jarFile, entry.getValue(), pool, recording);
+            moduleInfo = Optional.of(read.parsed().moduleInfo());
+            entryName = entry.getValue().getName();
+            moduleInfoBytes = read.length();
+            inflateNanos = read.inflateNanos();
+            parseNanos = read.parseNanos();
+        }
+
+        recording.complete(
+                JarScanRecording.ZIP_FILE, jarFile.getName(), versionedEntries.entriesVisited(),
+                entryName, moduleInfoBytes, -1, inflateNanos, parseNanos
+        );
+        return moduleInfo;
+    }
+
+    /// The `module-info.class` entries of a jar by release, and how many entries
+    /// were looked at to find them.
+    private record VersionedEntries(NavigableMap<Integer, ZipEntry> entries, int entriesVisited) {
+    }
+
+    private static VersionedEntries versionedEntries(ZipFile jarFile) {
+        var versionedEntries = new TreeMap<Integer, ZipEntry>();
+        var entries = jarFile.entries();
+        int entriesVisited = 0;
         while (entries.hasMoreElements()) {
             var entry = entries.nextElement();
-            // classes/ catches modules in jmods as well
-            if (ROOT_MODULE_INFO_PATTERN.test(entry.getName())) {
-                entryToUse = entry;
-                foundRoot = true;
-            }
-            if (MULTI_RELEASE_MODULE_INFO_PATTERN.test(entry.getName())) {
-                if (!foundRoot) {
-                    entryToUse = entry;
-                }
+            entriesVisited++;
+            var name = entry.getName();
+            if (!name.endsWith("module-info.class")) {
+                continue;
+            }
+            int release = release(name);
+            if (release >= BASE_RELEASE) {
+                versionedEntries.put(release, entry);
             }
         }
-        if (entryToUse != null) {
-            try (var is = jarFile.getInputStream(entryToUse)) {
-                return Optional.of(ModuleInfo.fromBytes(is.readAllBytes()));
+        return new VersionedEntries(versionedEntries, entriesVisited);
+    }
+
+    /// The release a `module-info.class` entry applies to: {@link #BASE_RELEASE}
+    /// for the root one (`classes/` catches modules in jmods as well), `N` for
+    /// `META-INF/versions/N/module-info.class`, and `-1` for anything else,
+    /// including versions of {@link #BASE_RELEASE} and below, which
+    /// {@link java.util.jar.JarFile} ignores.
+    private static int release(String name) {
+        if (ROOT_MODULE_INFO_PATTERN.test(name)) {
+            return BASE_RELEASE;
+        }
+        var matcher = MULTI_RELEASE_MODULE_INFO.matcher(name);
+        if (matcher.matches()) {
+            try {
+                int version = Integer.parseInt(matcher.group(2));
+                if (version > BASE_RELEASE) {
+                    return version;
+                }
+            } catch (NumberFormatException e) {
+                // Too large to ever be selected
             }
         }
+        return -1;
+    }
 
+    /// The entry that {@link #from(ZipFile)} and the other readers that don't take
+    /// a release use: the root one, or failing that the highest versioned one.
+    private static <T> @Nullable T preferredEntry(NavigableMap<Integer, T> entries) {
+        var root = entries.get(BASE_RELEASE);
+        if (root != null) {
+            return root;
+        }
+        var highest = entries.lastEntry();
+        return highest == null ? null : highest.getValue();
+    }
 
-        return Optional.empty();
+    /// A parsed entry, the number of bytes it inflated to, and the time spent
+    /// reading and inflating it and then parsing it.
+    private record EntryRead(ParsedModule parsed, int length, long inflateNanos, long parseNanos) {
     }
 
-    public static Optional<ModuleInfo> fromJarInputStream(JarInputStream jarInputStream) throws Exception {
-        var entry = jarInputStream.getNextJarEntry();
-        record EntryAndBytes(JarEntry e, byte[] bytes) {
-        }
-        boolean foundRoot = false;
-        EntryAndBytes entryToUse = null;
-        for (; entry != null; entry = jarInputStream.getNextJarEntry()) {
-            if (ROOT_MODULE_INFO_PATTERN.test(entry.getName())) {
-                entryToUse = new EntryAndBytes(entry, jarInputStream.readAllBytes());
-                foundRoot = true;
-            }
-            if (MULTI_RELEASE_MODULE_INFO_PATTERN.test(entry.getName())) {
-                if (!foundRoot) {
-                    entryToUse = new EntryAndBytes(entry, jarInputStream.readAllBytes());
-                }
-            }
+    /// Reads `entry` into a pooled buffer and parses it in place, timing it only
+    /// when `recording` has somewhere to put the times.
+    private static EntryRead readEntry(
+            ZipFile jarFile,
+            ZipEntry entry,
+            NamePool pool,
+            JarScanRecording recording
+    ) throws IOException {
+        var buffer = ReadBufferPool.SHARED.acquire(entry.getSize());
+        try (var is = jarFile.getInputStream(entry)) {
+            long inflateStart = recording.nanoTime();
+            var read = ReadBufferPool.readAll(is, buffer);
+            buffer = read.buffer();
+            long parseStart = recording.nanoTime();
+            var parsed = parse(ByteBuffer.wrap(buffer, 0, read.length()), pool);
+            return new EntryRead(parsed, read.length(), parseStart - inflateStart, recording.nanoTime() - parseStart);
+        } finally {
+            ReadBufferPool.SHARED.release(buffer);
         }
-        if (entryToUse != null) {
-            return Optional.of(ModuleInfo.fromBytes(entryToUse.bytes));
+    }
+
+    /// Reads the module info of a jar or jmod using only its central directory.
+    ///
+    /// Unlike {@link #from(ZipFile)} this reads the end of central directory record,
+    /// the central directory and then the one `module-info.class` entry that is
+    /// chosen, so it can be used with channels where every read is expensive.
+    /// The channel is not closed.
+    public static Optional<ModuleInfo> from(SeekableByteChannel channel) throws IOException {
+        return fromCentralDirectory(ZipSource.of(channel), NamePool.NONE);
+    }
+
+    /// Reads the module info of a jar or jmod held in memory, such as a
+    /// {@link java.nio.MappedByteBuffer}, starting at the buffer's position.
+    ///
+    /// Only the central directory and the chosen `module-info.class` entry are touched.
+    public static Optional<ModuleInfo> fromJarBuffer(ByteBuffer buffer) throws IOException {
+        return fromCentralDirectory(ZipSource.of(buffer), NamePool.NONE);
+    }
+
+    /// Reads the module info of every system module of the JDK at `javaHome`, by name.
+    ///
+    /// The `jmods/` directory is used when the JDK has one, and the `jrt:/` file system
+    /// of its runtime image otherwise. Modules are read in parallel, and the result is
+    /// cached for each JDK and release, so later calls for the same JDK are free.
+    public static Map<String, ModuleInfo> systemModules(Path javaHome) throws IOException, InterruptedException {
+        return SystemModules.load(javaHome);
+    }
+
+    static Optional<ModuleInfo> fromCentralDirectory(ZipSource source, NamePool pool) throws IOException {
+        var recording = JarScanRecording.begin();
+        var countingSource = new CountingZipSource(source);
+        var centralDirectory = ZipCentralDirectory.read(countingSource);
+        return fromCentralDirectory(countingSource, centralDirectory, pool, recording)
+                .map(ParsedModule::moduleInfo);
+    }
+
+    /// Like {@link #fromCentralDirectory(ZipSource, NamePool)}, for a central
+    /// directory that has already been read, which is left out of what is
+    /// recorded, also giving the opens of the module.
+    static Optional<ParsedModule> parseCentralDirectory(
+            ZipSource source,
+            ZipCentralDirectory centralDirectory,
+            NamePool pool
+    ) throws IOException {
+        var recording = JarScanRecording.begin();
+        return fromCentralDirectory(new CountingZipSource(source), centralDirectory, pool, recording);
+    }
+
+    private static Optional<ParsedModule> fromCentralDirectory(
+            CountingZipSource source,
+            ZipCentralDirectory centralDirectory,
+            NamePool pool,
+            JarScanRecording recording
+    ) throws IOException {
+        Optional<ParsedModule> parsed = Optional.empty();
+        long moduleInfoBytes = 0;
+        long inflateNanos = 0;
+        long parseNanos = 0;
+        var entryToUse = moduleInfoEntry(centralDirectory);
+        if (entryToUse.isPresent()) {
+            long inflateStart = recording.nanoTime();
+            var bytes = centralDirectory.readEntry(source, entryToUse.get());
+            long parseStart = recording.nanoTime();
+            parsed = Optional.of(parse(ByteBuffer.wrap(bytes), pool));
+            inflateNanos = parseStart - inflateStart;
+            parseNanos = recording.nanoTime() - parseStart;
+            moduleInfoBytes = bytes.length;
         }
 
-        return Optional.empty();
+        var entryName = entryToUse.map(ZipCentralDirectory.Entry::name).orElse(null);
+        recording.complete(
+                JarScanRecording.CENTRAL_DIRECTORY, null, centralDirectory.entryCount(),
+                entryName, moduleInfoBytes, source.count(), inflateNanos, parseNanos
+        );
+        return parsed;
     }
 
+    /// The entry {@link #from(SeekableByteChannel)} reads the module info from, chosen
+    /// the same way {@link #from(ZipFile)} chooses it.
+    static Optional<ZipCentralDirectory.Entry> moduleInfoEntry(ZipCentralDirectory centralDirectory) {
+        var versionedEntries = new TreeMap<Integer, ZipCentralDirectory.Entry>();
+        for (var entry : centralDirectory.moduleInfoCandidates()) {
+            int release = release(entry.name());
+            if (release >= BASE_RELEASE) {
+                versionedEntries.put(release, entry);
+            }
+        }
+        return Optional.ofNullable(preferredEntry(versionedEntries));
+    }
+
+    public static Optional<ModuleInfo> fromJarInputStream(JarInputStream jarInputStream) throws Exception {
+        return scanJarEntries(jarInputStream, Integer.MAX_VALUE, null).moduleInfo();
+    }
+
+    /// Reads the module info out of a jar that is being streamed, stopping as soon
+    /// as the answer is known.
+    ///
+    /// Reading stops once the root `module-info.class` has been found, the jar has
+    /// ended, or `entryBudget` entries have been visited. Only candidate
+    /// `module-info.class` entries are buffered. The stream is not closed.
+    public static JarStreamScan fromJarStream(InputStream inputStream, int entryBudget) throws IOException {
+        if (entryBudget < 0) {
+            throw new IllegalArgumentException("entryBudget must not be negative: " + entryBudget);
+        }
+        var countingInputStream = new CountingInputStream(inputStream);
+        var jarInputStream = new JarInputStream(countingInputStream, false);
+        return scanJarEntries(jarInputStream, entryBudget, countingInputStream);
+    }
+
+    private static JarStreamScan scanJarEntries(
+            JarInputStream jarInputStream,
+            int entryBudget,
+            @Nullable CountingInputStream countingInputStream
+    ) throws IOException {
+        var recording = JarScanRecording.begin();
+        String candidateName = null;
+        byte[] candidate = null;
+        int candidateRelease = -1;
+        boolean complete = false;
+        int entriesVisited = 0;
+        while (entriesVisited < entryBudget) {
+            var entry = jarInputStream.getNextJarEntry();
+            if (entry == null) {
+                complete = true;
+                break;
+            }
+            entriesVisited++;
+
+            int release = release(entry.getName());
+            if (release == BASE_RELEASE) {
+                // The root entry always wins, so nothing after it can change the answer
+                candidateName = entry.getName();
+                candidate = jarInputStream.readAllBytes();
+                complete = true;
+                break;
+            }
+            if (release > candidateRelease) {
+                candidateName = entry.getName();
+                candidate = jarInputStream.readAllBytes();
+                candidateRelease = release;
+            }
+        }
+
+        var moduleInfo = candidate == null
+                ? Optional.<ModuleInfo>empty()
+                : Optional.of(ModuleInfo.fromBytes(candidate));
+        // The byte count is only known when the underlying stream was wrapped by us
+        long bytesConsumed = countingInputStream == null ? -1 : countingInputStream.count();
+        recording.complete(
+                JarScanRecording.JAR_STREAM, null, entriesVisited,
+                candidateName, candidate == null ? 0 : candidate.length, bytesConsumed, 0, 0
+        );
+        return new JarStreamScan(moduleInfo, entriesVisited, bytesConsumed, complete);
+    }
 
     public static ModuleInfo from(ClassModel classModel) {
+        return from(classModel, NamePool.NONE);
+    }
+
+    static ModuleInfo from(ClassModel classModel, NamePool pool) {
         if (!classModel.isModuleInfo()) {
             throw new IllegalArgumentException("Class file does not represent a module.");
         }
@@ -198,81 +860,82 @@ public record ModuleInfo(
 
         for (var attribute : classModel.attributes()) {
             if (attribute instanceof ModuleAttribute moduleAttribute) {
-                name = moduleAttribute.moduleName().asSymbol().name();
+                name = pool.string(moduleAttribute.moduleName().asSymbol().name());
                 for (var export : moduleAttribute.exports()) {
+                    var exportsTo = export.exportsTo();
+                    var to = new ArrayList<ExportTo>(exportsTo.size());
+                    for (var entry : exportsTo) {
+                        to.add(pool.exportTo(entry.name().stringValue()));
+                    }
+                    int flags = export.exportsFlagsMask();
                     exports.add(new Export(
-                            new Package(export.exportedPackage().asSymbol().name()),
-                            export.exportsTo().stream()
-                                    .map(entry ->
-                                            new ExportTo(new Module(entry.asSymbol().name()))
-                                    )
-                                    .toList(),
-                            export.exportsFlags().contains(AccessFlag.SYNTHETIC),
-                            export.exportsFlags().contains(AccessFlag.MANDATED)
+                            pool.package_(export.exportedPackage().name().stringValue().replace('/', '.')),
+                            to,
+                            (flags & ClassFile.ACC_SYNTHETIC) != 0,
+                            (flags & ClassFile.ACC_MANDATED) != 0
                     ));
                 }
 
                 for (var require : moduleAttribute.requires()) {
-                    requires.add(new Require(
-                            new Module(require.requires().asSymbol().name()),
-                            require.requiresVersion().map(Utf8Entry::stringValue),
-                            require.requiresFlags().contains(AccessFlag.STATIC_PHASE),
-                            require.requiresFlags().contains(AccessFlag.TRANSITIVE),
-                            require.requiresFlags().contains(AccessFlag.MANDATED),
-                            require.requiresFlags().contains(AccessFlag.SYNTHETIC)
-                    ));
+                    int flags = require.requiresFlagsMask();
+                    var requiresVersion = require.requiresVersion();
+                    requires.add(pool.require(new Require(
+                            pool.module(require.requires().name().stringValue()),
+                            requiresVersion.isPresent()
+                                    ? Optional.of(pool.string(requiresVersion.get().stringValue()))
+                                    : Optional.empty(),
+                            (flags & ClassFile.ACC_STATIC_PHASE) != 0,
+                            (flags & ClassFile.ACC_TRANSITIVE) != 0,
+                            (flags & ClassFile.ACC_MANDATED) != 0,
+                            (flags & ClassFile.ACC_SYNTHETIC) != 0
+                    )));
                 }
 
                 for (var provide : moduleAttribute.provides()) {
-                    var serviceSymbol = provide.provides().asSymbol();
-
-                    provides.add(new Provide(
-                                    serviceSymbol.packageName() + "." + serviceSymbol.displayName(),
-                                    provide.providesWith().stream()
-                                            .map(classEntry -> {
-                                                var withSymbol = classEntry.asSymbol();
-                                                return withSymbol.packageName() + "." + withSymbol.displayName();
-                                            })
-                                            .toList()
-                            )
-                    );
+                    var providesWith = provide.providesWith();
+                    var with = new ArrayList<String>(providesWith.size());
+                    for (var classEntry : providesWith) {
+                        with.add(pool.string(binaryName(classEntry)));
+                    }
+                    provides.add(new Provide(pool.string(binaryName(provide.provides())), with));
                 }
 
                 for (var use : moduleAttribute.uses()) {
-                    var serviceSymbol = use.asSymbol();
-                    uses.add(new Use(
-                            serviceSymbol.packageName() + "." + serviceSymbol.displayName()
-                    ));
+                    uses.add(pool.use(binaryName(use)));
                 }
 
-                version = moduleAttribute.moduleVersion().map(Utf8Entry::stringValue);
-                open = moduleAttribute.moduleFlags().contains(AccessFlag.OPEN);
-                synthetic = moduleAttribute.moduleFlags().contains(AccessFlag.SYNTHETIC);
-                mandated = moduleAttribute.moduleFlags().contains(AccessFlag.MANDATED);
+                var moduleVersion = moduleAttribute.moduleVersion();
+                if (moduleVersion.isPresent()) {
+                    version = Optional.of(pool.string(moduleVersion.get().stringValue()));
+                }
+                int flags = moduleAttribute.moduleFlagsMask();
+                open = (flags & ClassFile.ACC_OPEN) != 0;
+                synthetic = (flags & ClassFile.ACC_SYNTHETIC) != 0;
+                mandated = (flags & ClassFile.ACC_MANDATED) != 0;
             }
             if (attribute instanceof ModulePackagesAttribute packagesAttribute) {
-                packagesAttribute.packages().stream()
-                        .map(packageEntry -> new Package(packageEntry.asSymbol().name()))
-                        .forEach(packages::add);
+                for (var packageEntry : packagesAttribute.packages()) {
+                    packages.add(pool.package_(packageEntry.name().stringValue().replace('/', '.')));
+                }
             }
             if (attribute instanceof ModuleHashesAttribute hashesAttribute) {
-                var algorithm = hashesAttribute.algorithm().stringValue();
-                var hashes_ = hashesAttribute.hashes()
-                        .stream()
-                        .map(hash -> new ModuleHash(
-                                new Module(hash.moduleName().asSymbol().name()),
-                                HexFormat.of().formatHex(hash.hash())
-                        ))
-                        .toList();
+                var algorithm = pool.string(hashesAttribute.algorithm().stringValue());
+                var moduleHashes = hashesAttribute.hashes();
+                var hashes_ = new ArrayList<ModuleHash>(moduleHashes.size());
+                for (var hash : moduleHashes) {
+                    hashes_.add(new ModuleHash(
+                            pool.module(hash.moduleName().name().stringValue()),
+                            HEX.formatHex(hash.hash())
+                    ));
+                }
                 hashes.add(new Hash(algorithm, hashes_));
 
             }
             if (attribute instanceof ModuleMainClassAttribute moduleMainClassAttribute) {
-                var mainClassSymbol = moduleMainClassAttribute.mainClass().asSymbol();
-                mainClass = Optional.of(mainClassSymbol.packageName() + "." + mainClassSymbol.displayName());
+                mainClass = Optional.of(binaryName(moduleMainClassAttribute.mainClass()));
             }
             if (attribute instanceof ModuleTargetAttribute targetAttribute) {
-                targetPlatform = Optional.of(targetAttribute.targetPlatform().stringValue());
+                targetPlatform = Optional.of(pool.string(targetAttribute.targetPlatform().stringValue()));
             }
         }
 
@@ -283,125 +946,378 @@ public record ModuleInfo(
         );
     }
 
+    /// The dotted binary name of a class, like `java.util.Map$Entry`, taken straight
+    /// from its internal name rather than going through a {@link ClassDesc}.
+    private static String binaryName(ClassEntry classEntry) {
+        return classEntry.asInternalName().replace('/', '.');
+    }
+
+    /// Applies `consumer` to the module described by `original` and returns the
+    /// updated `module-info.class`.
+    ///
+    /// Where {@link #toBytes()} builds a class file from scratch, this only writes
+    /// again the attributes whose contents changed. The constant pool, unchanged
+    /// attributes, attributes this record doesn't model and the `opens` of the
+    /// `Module` attribute are all carried over from `original`. If nothing changed
+    /// a copy of `original` is returned.
+    public static byte[] patch(byte[] original, Consumer<MutableModuleInfo> consumer) {
+        var classModel = CLASS_FILE.parse(original);
+        var before = from(classModel);
+        var after = before.with(consumer);
+        if (after.equals(before)) {
+            return original.clone();
+        }
+        return CLASS_FILE.transformClass(classModel, new PatchTransform(before, after));
+    }
+
+    /// Copies every element of a `module-info.class`, replacing the attributes that
+    /// differ between `before` and `after`. A replacement is written where the first
+    /// attribute of its kind was, or at the end if there was none.
+    private static final class PatchTransform implements ClassTransform {
+        private final ModuleInfo after;
+        private final boolean moduleChanged;
+        private final boolean packagesChanged;
+        private final boolean hashesChanged;
+        private final boolean mainClassChanged;
+        private final boolean targetChanged;
+
+        private boolean wrotePackages;
+        private boolean wroteHashes;
+        private boolean wroteMainClass;
+        private boolean wroteTarget;
+
+        PatchTransform(ModuleInfo before, ModuleInfo after) {
+            this.after = after;
+            this.moduleChanged = !before.name.equals(after.name)
+                    || !before.exports.equals(after.exports)
+                    || !before.requires.equals(after.requires)
+                    || !before.provides.equals(after.provides)
+                    || !before.uses.equals(after.uses)
+                    || !before.version.equals(after.version)
+                    || before.open != after.open
+                    || before.synthetic != after.synthetic
+                    || before.mandated != after.mandated;
+            this.packagesChanged = !before.packages.equals(after.packages);
+            this.hashesChanged = !before.hashes.equals(after.hashes);
+            this.mainClassChanged = !before.mainClass.equals(after.mainClass);
+            this.targetChanged = !before.targetPlatform.equals(after.targetPlatform);
+        }
+
+        @Override
+        public void accept(ClassBuilder builder, ClassElement element) {
+            switch (element) {
+                case ModuleAttribute moduleAttribute when moduleChanged ->
+                        builder.with(moduleAttribute(after, moduleAttribute.opens()));
+                case ModulePackagesAttribute ignored when packagesChanged -> {
+                    if (!wrotePackages) {
+                        packagesAttribute(after).ifPresent(builder::with);
+                        wrotePackages = true;
+                    }
+                }
+                case ModuleHashesAttribute ignored when hashesChanged -> {
+                    if (!wroteHashes) {
+                        hashesAttributes(after).forEach(builder::with);
+                        wroteHashes = true;
+                    }
+                }
+                case ModuleMainClassAttribute ignored when mainClassChanged -> {
+                    if (!wroteMainClass) {
+                        mainClassAttribute(after).ifPresent(builder::with);
+                        wroteMainClass = true;
+                    }
+                }
+                case ModuleTargetAttribute ignored when targetChanged -> {
+                    if (!wroteTarget) {
+                        targetAttribute(after).ifPresent(builder::with);
+                        wroteTarget = true;
+                    }
+                }
+                default -> builder.with(element);
+            }
+        }
+
+        @Override
+        public void atEnd(ClassBuilder builder) {
+            if (packagesChanged && !wrotePackages) {
+                packagesAttribute(after).ifPresent(builder::with);
+            }
+            if (hashesChanged && !wroteHashes) {
+                hashesAttributes(after).forEach(builder::with);
+            }
+            if (mainClassChanged && !wroteMainClass) {
+                mainClassAttribute(after).ifPresent(builder::with);
+            }
+            if (targetChanged && !wroteTarget) {
+                targetAttribute(after).ifPresent(builder::with);
+            }
+        }
+    }
+
     private static byte[] toBytesHelper(ModuleInfo mi) {
+        return CLASS_FILE.buildModule(
+                moduleAttribute(mi, List.of()),
+                classBuilder -> {
+                    packagesAttribute(mi).ifPresent(classBuilder::accept);
+                    hashesAttributes(mi).forEach(classBuilder::accept);
+                    mainClassAttribute(mi).ifPresent(classBuilder::accept);
+                    targetAttribute(mi).ifPresent(classBuilder::accept);
 
-        return ClassFile.of().buildModule(
-                ModuleAttribute.of(
-                        ModuleDesc.of(mi.name),
-                        moduleAttributeBuilder -> {
-                            mi.version.ifPresent(moduleAttributeBuilder::moduleVersion);
-                            {
-                                var accessFlags = new ArrayList<AccessFlag>();
-                                if (mi.open) {
-                                    accessFlags.add(AccessFlag.OPEN);
-                                }
-                                if (mi.synthetic) {
-                                    accessFlags.add(AccessFlag.SYNTHETIC);
-                                }
-                                if (mi.mandated) {
-                                    accessFlags.add(AccessFlag.MANDATED);
-                                }
-
-                                if (!accessFlags.isEmpty()) {
-                                    moduleAttributeBuilder.moduleFlags(accessFlags.toArray(AccessFlag[]::new));
-                                }
-                            }
-                            mi.exports.forEach(export -> {
-                                var packageDesc = PackageDesc.of(export.package_().name());
-                                var accessFlags = new ArrayList<AccessFlag>();
-                                if (export.synthetic()) {
-                                    accessFlags.add(AccessFlag.SYNTHETIC);
-                                }
-                                if (export.mandated()) {
-                                    accessFlags.add(AccessFlag.MANDATED);
-                                }
-                                moduleAttributeBuilder.exports(
-                                        packageDesc,
-                                        accessFlags,
-                                        export.to()
-                                                .stream()
-                                                .map(ExportTo::module)
-                                                .map(Module::name)
-                                                .map(ModuleDesc::of)
-                                                .toArray(ModuleDesc[]::new)
-                                );
-                            });
-
-                            mi.requires.forEach(require -> {
-                                var accessFlags = new ArrayList<AccessFlag>();
-                                if (require.static_()) {
-                                    accessFlags.add(AccessFlag.STATIC_PHASE);
-                                }
-                                if (require.transitive()) {
-                                    accessFlags.add(AccessFlag.TRANSITIVE);
-                                }
-                                if (require.synthetic()) {
-                                    accessFlags.add(AccessFlag.SYNTHETIC);
-                                }
-                                if (require.mandated()) {
-                                    accessFlags.add(AccessFlag.MANDATED);
-                                }
-                                moduleAttributeBuilder.requires(
-                                        ModuleDesc.of(require.module().name()),
-                                        accessFlags,
-                                        require.version().orElse(null)
-                                );
-                            });
-                            mi.provides.forEach(provide ->  {
-                                moduleAttributeBuilder.provides(
-                                        ModuleProvideInfo.of(
-                                                ClassDesc.of(provide.service()),
-                                                provide.with()
-                                                        .stream()
-                                                        .map(ClassDesc::of)
-                                                        .toArray(ClassDesc[]::new)
-                                        )
-                                );
-                            });
-                            mi.uses.forEach(use -> {
-                                moduleAttributeBuilder.uses(ClassDesc.of(use.service()));
-                            });
+                    classBuilder.withVersion(ClassFile.JAVA_9_VERSION, 0);
+                }
+        );
+    }
 
+    private static ModuleAttribute moduleAttribute(ModuleInfo mi, List<ModuleOpenInfo> opens) {
+        return ModuleAttribute.of(
+                ModuleDesc.of(mi.name),
+                moduleAttributeBuilder -> {
+                    mi.version.ifPresent(moduleAttributeBuilder::moduleVersion);
+                    {
+                        var accessFlags = new ArrayList<AccessFlag>();
+                        if (mi.open) {
+                            accessFlags.add(AccessFlag.OPEN);
+                        }
+                        if (mi.synthetic) {
+                            accessFlags.add(AccessFlag.SYNTHETIC);
+                        }
+                        if (mi.mandated) {
+                            accessFlags.add(AccessFlag.MANDATED);
+                        }
+
+                        if (!accessFlags.isEmpty()) {
+                            moduleAttributeBuilder.moduleFlags(accessFlags.toArray(AccessFlag[]::new));
                         }
-                ),
-                classBuilder -> {
-                    if (!mi.packages.isEmpty()) {
-                        classBuilder.accept(ModulePackagesAttribute.ofNames(
-                                mi.packages.stream()
-                                        .map(Package::name)
-                                        .map(PackageDesc::of)
-                                        .toArray(PackageDesc[]::new)
-                        ));
                     }
-                    mi.mainClass().ifPresent(mainClass -> {
-                        classBuilder.accept(ModuleMainClassAttribute.of(ClassDesc.of(mainClass)));
-                    });
-                    mi.targetPlatform().ifPresent(targetPlatform -> {
-                        classBuilder.accept(ModuleTargetAttribute.of(targetPlatform));
+                    mi.exports.forEach(export -> {
+                        var packageDesc = PackageDesc.of(export.package_().name());
+                        var accessFlags = new ArrayList<AccessFlag>();
+                        if (export.synthetic()) {
+                            accessFlags.add(AccessFlag.SYNTHETIC);
+                        }
+                        if (export.mandated()) {
+                            accessFlags.add(AccessFlag.MANDATED);
+                        }
+                        moduleAttributeBuilder.exports(
+                                packageDesc,
+                                accessFlags,
+                                export.to()
+                                        .stream()
+                                        .map(ExportTo::module)
+                                        .map(Module::name)
+                                        .map(ModuleDesc::of)
+                                        .toArray(ModuleDesc[]::new)
+                        );
                     });
+                    opens.forEach(moduleAttributeBuilder::opens);
 
-
-                    classBuilder.withVersion(ClassFile.JAVA_9_VERSION, 0);
+                    mi.requires.forEach(require -> {
+                        var accessFlags = new ArrayList<AccessFlag>();
+                        if (require.static_()) {
+                            accessFlags.add(AccessFlag.STATIC_PHASE);
+                        }
+                        if (require.transitive()) {
+                            accessFlags.add(AccessFlag.TRANSITIVE);
+                        }
+                        if (require.synthetic()) {
+                            accessFlags.add(AccessFlag.SYNTHETIC);
+                        }
+                        if (require.mandated()) {
+                            accessFlags.add(AccessFlag.MANDATED);
+                        }
+                        moduleAttributeBuilder.requires(
+                                ModuleDesc.of(require.module().name()),
+                                accessFlags,
+                                require.version().orElse(null)
+                        );
+                    });
+                    mi.provides.forEach(provide ->  {
+                        moduleAttributeBuilder.provides(
+                                ModuleProvideInfo.of(
+                                        ClassDesc.of(provide.service()),
+                                        provide.with()
+                                                .stream()
+                                                .map(ClassDesc::of)
+                                                .toArray(ClassDesc[]::new)
+                                )
+                        );
+                    });
+                    mi.uses.forEach(use -> {
+                        moduleAttributeBuilder.uses(ClassDesc.of(use.service()));
+                    });
                 }
         );
+    }
 
+    private static Optional<ModulePackagesAttribute> packagesAttribute(ModuleInfo mi) {
+        if (mi.packages.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(ModulePackagesAttribute.ofNames(
+                mi.packages.stream()
+                        .map(Package::name)
+                        .map(PackageDesc::of)
+                        .toArray(PackageDesc[]::new)
+        ));
+    }
 
+    private static List<ModuleHashesAttribute> hashesAttributes(ModuleInfo mi) {
+        return mi.hashes.stream()
+                .map(hash -> ModuleHashesAttribute.of(
+                        hash.algorithm(),
+                        hash.hashes()
+                                .stream()
+                                .map(moduleHash -> ModuleHashInfo.of(
+                                        ModuleDesc.of(moduleHash.module().name()),
+                                        HEX.parseHex(moduleHash.hash())
+                                ))
+                                .toList()
+                ))
+                .toList();
+    }
+
+    private static Optional<ModuleMainClassAttribute> mainClassAttribute(ModuleInfo mi) {
+        return mi.mainClass.map(mainClass -> ModuleMainClassAttribute.of(ClassDesc.of(mainClass)));
+    }
 
-//          (fn [class-builder]
-//            (when-let [hashes (:hashes module-info)]
-//              (ClassBuilder/.accept
-//                class-builder
-//                (^[String List]
-//                  ModuleHashesAttribute/of
-//                  (:algorithm hashes)
-//                  (mapv (fn [{:keys [module hash]}]
-//                          (ModuleHashInfo/of
-//                            (ModuleDesc/of module)
-//                            (-> (HexFormat/of)
-//                                (HexFormat/.parseHex hash))))
-//                        (:hashes hashes)))))
+    private static Optional<ModuleTargetAttribute> targetAttribute(ModuleInfo mi) {
+        return mi.targetPlatform.map(ModuleTargetAttribute::of);
     }
+
     public byte[] toBytes() {
         return toBytesHelper(this);
     }
+
+    /// A SHA-256 digest of this module info, as lowercase hex, that does not
+    /// depend on the order things are listed in.
+    ///
+    /// Exports, requires, provides, uses, packages, hashes and the targets of
+    /// each qualified export can be in any order and still give the same
+    /// fingerprint. The implementations of a provide keep their order, which is
+    /// the order they are loaded in. Two module infos with the same fingerprint
+    /// describe the same module, so it can be used as a cache key. For the raw
+    /// bytes of a `module-info.class`, {@link ModuleInfoView#fingerprint()} gives
+    /// the same result without reading them into a module info first.
+    public String fingerprint() {
+        return ModuleFingerprint.of(this);
+    }
+
+    /// The {@link ModuleDescriptor} for this module info, built without going
+    /// back to the class file.
+    ///
+    /// Versions that {@link ModuleDescriptor.Version#parse(String)} does not
+    /// accept are left out, as are provides without any implementations. The
+    /// hashes and target platform have no place in a descriptor and are dropped.
+    ///
+    /// A module info does not keep the `opens` of a module that is not open, so
+    /// the descriptor has none. {@link ModuleInfoFinder} is given them alongside
+    /// the module info and gives descriptors with them.
+    ///
+    /// @throws IllegalArgumentException If this is not a legal module declaration,
+    ///                                  such as when a name is not a legal Java identifier.
+    /// @throws IllegalStateException If a module, package or service is listed twice.
+    public ModuleDescriptor toModuleDescriptor() {
+        return toModuleDescriptor(Set.of(), List.of());
+    }
+
+    /// Like {@link #toModuleDescriptor()}, with `extraPackages` added to the
+    /// packages of the module and `opens`, read from the class file, as its opens.
+    ModuleDescriptor toModuleDescriptor(Set<String> extraPackages, List<Export> opens) {
+        var modifiers = EnumSet.noneOf(ModuleDescriptor.Modifier.class);
+        if (open) {
+            modifiers.add(ModuleDescriptor.Modifier.OPEN);
+        }
+        if (synthetic) {
+            modifiers.add(ModuleDescriptor.Modifier.SYNTHETIC);
+        }
+        if (mandated) {
+            modifiers.add(ModuleDescriptor.Modifier.MANDATED);
+        }
+        var builder = ModuleDescriptor.newModule(name, modifiers);
+        version.flatMap(ModuleInfo::parseVersion).ifPresent(builder::version);
+
+        for (var require : requires) {
+            var requireModifiers = EnumSet.noneOf(ModuleDescriptor.Requires.Modifier.class);
+            if (require.static_()) {
+                requireModifiers.add(ModuleDescriptor.Requires.Modifier.STATIC);
+            }
+            if (require.transitive()) {
+                requireModifiers.add(ModuleDescriptor.Requires.Modifier.TRANSITIVE);
+            }
+            if (require.mandated()) {
+                requireModifiers.add(ModuleDescriptor.Requires.Modifier.MANDATED);
+            }
+            if (require.synthetic()) {
+                requireModifiers.add(ModuleDescriptor.Requires.Modifier.SYNTHETIC);
+            }
+            var requireVersion = require.version().flatMap(ModuleInfo::parseVersion);
+            if (requireVersion.isPresent()) {
+                builder.requires(requireModifiers, require.module().name(), requireVersion.get());
+            } else {
+                builder.requires(requireModifiers, require.module().name());
+            }
+        }
+
+        for (var export : exports) {
+            var exportModifiers = EnumSet.noneOf(ModuleDescriptor.Exports.Modifier.class);
+            if (export.synthetic()) {
+                exportModifiers.add(ModuleDescriptor.Exports.Modifier.SYNTHETIC);
+            }
+            if (export.mandated()) {
+                exportModifiers.add(ModuleDescriptor.Exports.Modifier.MANDATED);
+            }
+            if (export.to().isEmpty()) {
+                builder.exports(exportModifiers, export.package_().name());
+            } else {
+                var targets = new HashSet<String>();
+                for (var to : export.to()) {
+                    targets.add(to.module().name());
+                }
+                builder.exports(exportModifiers, export.package_().name(), targets);
+            }
+        }
+
+        for (var open : opens) {
+            var openModifiers = EnumSet.noneOf(ModuleDescriptor.Opens.Modifier.class);
+            if (open.synthetic()) {
+                openModifiers.add(ModuleDescriptor.Opens.Modifier.SYNTHETIC);
+            }
+            if (open.mandated()) {
+                openModifiers.add(ModuleDescriptor.Opens.Modifier.MANDATED);
+            }
+            if (open.to().isEmpty()) {
+                builder.opens(openModifiers, open.package_().name());
+            } else {
+                var targets = new HashSet<String>();
+                for (var to : open.to()) {
+                    targets.add(to.module().name());
+                }
+                builder.opens(openModifiers, open.package_().name(), targets);
+            }
+        }
+
+        for (var use : uses) {
+            builder.uses(use.service());
+        }
+        for (var provide : provides) {
+            if (!provide.with().isEmpty()) {
+                builder.provides(provide.service(), provide.with());
+            }
+        }
+
+        var allPackages = new HashSet<>(extraPackages);
+        for (var package_ : packages) {
+            allPackages.add(package_.name());
+        }
+        builder.packages(allPackages);
+        mainClass.ifPresent(builder::mainClass);
+        return builder.build();
+    }
+
+    private static Optional<ModuleDescriptor.Version> parseVersion(String version) {
+        try {
+            return Optional.of(ModuleDescriptor.Version.parse(version));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
 }
@@ -0,0 +1,190 @@
+package dev.mccue.module_info;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/// A compact binary encoding of {@link ModuleInfo}, used for on-disk storage.
+///
+/// Strings are written with {@link DataOutput#writeUTF(String)}, which has the
+/// same length limit as a class file's constant pool. Booleans are packed into
+/// a flags byte per record.
+final class ModuleInfoBinary {
+    static final int FORMAT_VERSION = 1;
+
+    private ModuleInfoBinary() {}
+
+    static void write(ModuleInfo moduleInfo, DataOutput out) throws IOException {
+        out.writeUTF(moduleInfo.name());
+        out.writeByte(flags(moduleInfo.open(), moduleInfo.synthetic(), moduleInfo.mandated(), false));
+        writeOptional(moduleInfo.version(), out);
+
+        writeExports(moduleInfo.exports(), out);
+
+        out.writeInt(moduleInfo.requires().size());
+        for (var require : moduleInfo.requires()) {
+            out.writeUTF(require.module().name());
+            out.writeByte(flags(require.static_(), require.transitive(), require.mandated(), require.synthetic()));
+            writeOptional(require.version(), out);
+        }
+
+        out.writeInt(moduleInfo.provides().size());
+        for (var provide : moduleInfo.provides()) {
+            out.writeUTF(provide.service());
+            out.writeInt(provide.with().size());
+            for (var with : provide.with()) {
+                out.writeUTF(with);
+            }
+        }
+
+        out.writeInt(moduleInfo.uses().size());
+        for (var use : moduleInfo.uses()) {
+            out.writeUTF(use.service());
+        }
+
+        out.writeInt(moduleInfo.packages().size());
+        for (var package_ : moduleInfo.packages()) {
+            out.writeUTF(package_.name());
+        }
+
+        out.writeInt(moduleInfo.hashes().size());
+        for (var hash : moduleInfo.hashes()) {
+            out.writeUTF(hash.algorithm());
+            out.writeInt(hash.hashes().size());
+            for (var moduleHash : hash.hashes()) {
+                out.writeUTF(moduleHash.module().name());
+                out.writeUTF(moduleHash.hash());
+            }
+        }
+
+        writeOptional(moduleInfo.mainClass(), out);
+        writeOptional(moduleInfo.targetPlatform(), out);
+    }
+
+    static ModuleInfo read(DataInput in) throws IOException {
+        var name = in.readUTF();
+        int moduleFlags = in.readUnsignedByte();
+        var version = readOptional(in);
+
+        var exports = readExports(in);
+
+        int requireCount = readCount(in);
+        var requires = new ArrayList<Require>();
+        for (int i = 0; i < requireCount; i++) {
+            var module = new Module(in.readUTF());
+            int flags = in.readUnsignedByte();
+            requires.add(new Require(
+                    module,
+                    readOptional(in),
+                    flag(flags, 0),
+                    flag(flags, 1),
+                    flag(flags, 2),
+                    flag(flags, 3)
+            ));
+        }
+
+        int provideCount = readCount(in);
+        var provides = new ArrayList<Provide>();
+        for (int i = 0; i < provideCount; i++) {
+            var service = in.readUTF();
+            int withCount = readCount(in);
+            var with = new ArrayList<String>();
+            for (int j = 0; j < withCount; j++) {
+                with.add(in.readUTF());
+            }
+            provides.add(new Provide(service, with));
+        }
+
+        int useCount = readCount(in);
+        var uses = new ArrayList<Use>();
+        for (int i = 0; i < useCount; i++) {
+            uses.add(new Use(in.readUTF()));
+        }
+
+        int packageCount = readCount(in);
+        var packages = new ArrayList<Package>();
+        for (int i = 0; i < packageCount; i++) {
+            packages.add(new Package(in.readUTF()));
+        }
+
+        int hashCount = readCount(in);
+        var hashes = new ArrayList<Hash>();
+        for (int i = 0; i < hashCount; i++) {
+            var algorithm = in.readUTF();
+            int moduleHashCount = readCount(in);
+            var moduleHashes = new ArrayList<ModuleHash>();
+            for (int j = 0; j < moduleHashCount; j++) {
+                moduleHashes.add(new ModuleHash(new Module(in.readUTF()), in.readUTF()));
+            }
+            hashes.add(new Hash(algorithm, moduleHashes));
+        }
+
+        var mainClass = readOptional(in);
+        var targetPlatform = readOptional(in);
+
+        return new ModuleInfo(
+                name, exports, requires, provides, uses, version,
+                flag(moduleFlags, 0), flag(moduleFlags, 1), flag(moduleFlags, 2),
+                packages, hashes, mainClass, targetPlatform
+        );
+    }
+
+    /// Writes exports, or the opens of a {@link ParsedModule}, which have the same shape.
+    static void writeExports(List<Export> exports, DataOutput out) throws IOException {
+        out.writeInt(exports.size());
+        for (var export : exports) {
+            out.writeUTF(export.package_().name());
+            out.writeByte(flags(export.synthetic(), export.mandated(), false, false));
+            out.writeInt(export.to().size());
+            for (var to : export.to()) {
+                out.writeUTF(to.module().name());
+            }
+        }
+    }
+
+    static List<Export> readExports(DataInput in) throws IOException {
+        int exportCount = readCount(in);
+        var exports = new ArrayList<Export>();
+        for (int i = 0; i < exportCount; i++) {
+            var package_ = new Package(in.readUTF());
+            int flags = in.readUnsignedByte();
+            int toCount = readCount(in);
+            var to = new ArrayList<ExportTo>();
+            for (int j = 0; j < toCount; j++) {
+                to.add(new ExportTo(new Module(in.readUTF())));
+            }
+            exports.add(new Export(package_, to, flag(flags, 0), flag(flags, 1)));
+        }
+        return exports;
+    }
+
+    private static int readCount(DataInput in) throws IOException {
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("Invalid count: " + count);
+        }
+        return count;
+    }
+
+    private static int flags(boolean a, boolean b, boolean c, boolean d) {
+        return (a ? 1 : 0) | (b ? 2 : 0) | (c ? 4 : 0) | (d ? 8 : 0);
+    }
+
+    private static boolean flag(int flags, int bit) {
+        return (flags & (1 << bit)) != 0;
+    }
+
+    private static void writeOptional(Optional<String> value, DataOutput out) throws IOException {
+        out.writeBoolean(value.isPresent());
+        if (value.isPresent()) {
+            out.writeUTF(value.get());
+        }
+    }
+
+    private static Optional<String> readOptional(DataInput in) throws IOException {
+        return in.readBoolean() ? Optional.of(in.readUTF()) : Optional.empty();
+    }
+}
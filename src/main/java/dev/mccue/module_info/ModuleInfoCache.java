@@ -0,0 +1,328 @@
+package dev.mccue.module_info;
+
+import org.jspecify.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+import java.util.zip.ZipFile;
+
+/// A persistent cache of parsed {@link ModuleInfo}s, stored in a directory on disk.
+///
+/// Jars, jmods and exploded modules are keyed by their path, size and last
+/// modified time, so a cache hit only needs to look at the file's attributes.
+/// When the size matches but the modification time does not, a CRC of the
+/// archive's central directory (or of the `module-info.class` of an exploded
+/// module) is compared before the entry is thrown away, so touched but otherwise
+/// unchanged files are still hits. Whether a file had no module info at all is
+/// cached as well, and so are the `opens` of each module, which
+/// {@link ModulePathScanner} hands on to {@link ModuleInfoFinder}.
+///
+/// Each entry is a separate file that is written to a temporary file and then
+/// atomically moved into place, so any number of threads and JVMs can share the
+/// same directory. Entries that are older than the maximum age, or that push the
+/// cache over its maximum size, are removed by {@link #evict()}, which is also run
+/// when a cache is opened if it has not been run recently.
+///
+/// Failures to read or write the cache itself are never reported; the cache is
+/// bypassed instead.
+public final class ModuleInfoCache {
+    private static final int MAGIC = 0x4D494332;
+    private static final String ENTRY_SUFFIX = ".bin";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String LAST_EVICTION_MARKER = ".last-eviction";
+    private static final String BYTES_SOURCE = "";
+
+    private static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+    private static final Duration DEFAULT_MAX_AGE = Duration.ofDays(30);
+    private static final Duration TOUCH_INTERVAL = Duration.ofDays(1);
+    private static final Duration EVICTION_INTERVAL = Duration.ofHours(1);
+
+    private final Path directory;
+    private final long maxBytes;
+    private final Duration maxAge;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private ModuleInfoCache(Path directory, long maxBytes, Duration maxAge) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.maxAge = maxAge;
+    }
+
+    public static ModuleInfoCache open(Path directory) throws IOException {
+        return open(directory, DEFAULT_MAX_BYTES, DEFAULT_MAX_AGE);
+    }
+
+    public static ModuleInfoCache open(Path directory, long maxBytes, Duration maxAge) throws IOException {
+        Objects.requireNonNull(directory);
+        Objects.requireNonNull(maxAge);
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("maxBytes must not be negative: " + maxBytes);
+        }
+        if (maxAge.isNegative()) {
+            throw new IllegalArgumentException("maxAge must not be negative: " + maxAge);
+        }
+
+        Files.createDirectories(directory);
+        var cache = new ModuleInfoCache(directory, maxBytes, maxAge);
+
+        var marker = directory.resolve(LAST_EVICTION_MARKER);
+        if (!Files.exists(marker) || isOlderThan(Files.getLastModifiedTime(marker), EVICTION_INTERVAL)) {
+            cache.evict();
+        }
+        return cache;
+    }
+
+    public Path directory() {
+        return directory;
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    /// Equivalent to {@link ModuleInfo#from(ZipFile)} for the file the zip was opened from.
+    public Optional<ModuleInfo> from(ZipFile zipFile) throws IOException {
+        return from(Path.of(zipFile.getName()));
+    }
+
+    /// Reads the module info of a jar, jmod or exploded module, going to the
+    /// file only when the cache does not have an up-to-date entry for it.
+    public Optional<ModuleInfo> from(Path path) throws IOException {
+        return parse(path).map(ParsedModule::moduleInfo);
+    }
+
+    /// Like {@link #from(Path)}, also giving the opens of the module.
+    Optional<ParsedModule> parse(Path path) throws IOException {
+        var file = path.toAbsolutePath().normalize();
+        boolean exploded = Files.isDirectory(file);
+        var fingerprinted = exploded ? file.resolve("module-info.class") : file;
+        var attributes = Files.readAttributes(fingerprinted, BasicFileAttributes.class);
+        long size = attributes.size();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+
+        var source = file.toString();
+        var entryFile = entryFile(source.getBytes(StandardCharsets.UTF_8));
+        var stored = read(entryFile, source);
+        if (stored != null && stored.size() == size && stored.lastModified() == lastModified) {
+            hit(entryFile);
+            return stored.parsed();
+        }
+
+        long crc;
+        Optional<ParsedModule> parsed;
+        if (exploded) {
+            var bytes = Files.readAllBytes(fingerprinted);
+            crc = crc(ByteBuffer.wrap(bytes));
+            parsed = stored != null && stored.size() == size && stored.crc() == crc
+                    ? stored.parsed()
+                    : Optional.of(ModuleInfo.parse(bytes));
+        } else {
+            try (var channel = FileChannel.open(file)) {
+                var zipSource = ZipSource.of(channel);
+                var centralDirectory = ZipCentralDirectory.read(zipSource);
+                crc = crc(centralDirectory.headers());
+                parsed = stored != null && stored.size() == size && stored.crc() == crc
+                        ? stored.parsed()
+                        : ModuleInfo.parseCentralDirectory(zipSource, centralDirectory, NamePool.NONE);
+            }
+        }
+
+        if (stored != null && stored.size() == size && stored.crc() == crc) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        write(entryFile, new Stored(source, size, lastModified, crc, parsed));
+        return parsed;
+    }
+
+    /// Equivalent to {@link ModuleInfo#fromBytes(byte[])}, keyed by the content of `bytes`.
+    public ModuleInfo fromBytes(byte[] bytes) {
+        var entryFile = entryFile(bytes);
+        long crc = crc(ByteBuffer.wrap(bytes));
+        var stored = read(entryFile, BYTES_SOURCE);
+        if (stored != null
+                && stored.size() == bytes.length
+                && stored.crc() == crc
+                && stored.parsed().isPresent()) {
+            hit(entryFile);
+            return stored.parsed().get().moduleInfo();
+        }
+
+        misses.increment();
+        var parsed = ModuleInfo.parse(bytes);
+        write(entryFile, new Stored(BYTES_SOURCE, bytes.length, 0, crc, Optional.of(parsed)));
+        return parsed.moduleInfo();
+    }
+
+    /// Removes entries older than the maximum age, then the least recently used
+    /// entries until the cache fits in its maximum size.
+    public void evict() throws IOException {
+        record CacheFile(Path path, FileTime lastModified, long size) {}
+
+        var files = new ArrayList<CacheFile>();
+        try (var children = Files.list(directory)) {
+            for (var child : (Iterable<Path>) children::iterator) {
+                var fileName = child.getFileName().toString();
+                try {
+                    var attributes = Files.readAttributes(child, BasicFileAttributes.class);
+                    if (fileName.endsWith(TEMP_SUFFIX)) {
+                        // Left behind by a writer that died before moving it into place
+                        if (isOlderThan(attributes.lastModifiedTime(), EVICTION_INTERVAL)) {
+                            Files.deleteIfExists(child);
+                        }
+                    } else if (fileName.endsWith(ENTRY_SUFFIX)) {
+                        files.add(new CacheFile(child, attributes.lastModifiedTime(), attributes.size()));
+                    }
+                } catch (NoSuchFileException e) {
+                    // Removed by another process in the meantime
+                }
+            }
+        }
+
+        files.sort(Comparator.comparing(CacheFile::lastModified));
+        long totalSize = 0;
+        for (var file : files) {
+            totalSize += file.size();
+        }
+        for (var file : files) {
+            if (totalSize <= maxBytes && !isOlderThan(file.lastModified(), maxAge)) {
+                break;
+            }
+            Files.deleteIfExists(file.path());
+            totalSize -= file.size();
+        }
+
+        var marker = directory.resolve(LAST_EVICTION_MARKER);
+        try {
+            Files.createFile(marker);
+        } catch (FileAlreadyExistsException e) {
+            Files.setLastModifiedTime(marker, FileTime.from(Instant.now()));
+        }
+    }
+
+    private record Stored(
+            String source,
+            long size,
+            long lastModified,
+            long crc,
+            Optional<ParsedModule> parsed
+    ) {}
+
+    private Path entryFile(byte[] key) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        return directory.resolve(HexFormat.of().formatHex(digest.digest(key)) + ENTRY_SUFFIX);
+    }
+
+    private @Nullable Stored read(Path entryFile, String expectedSource) {
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(entryFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != ModuleInfoBinary.FORMAT_VERSION) {
+                return null;
+            }
+            var source = in.readUTF();
+            if (!source.equals(expectedSource)) {
+                return null;
+            }
+            long size = in.readLong();
+            long lastModified = in.readLong();
+            long crc = in.readLong();
+            var parsed = in.readBoolean()
+                    ? Optional.of(new ParsedModule(ModuleInfoBinary.read(in), ModuleInfoBinary.readExports(in)))
+                    : Optional.<ParsedModule>empty();
+            return new Stored(source, size, lastModified, crc, parsed);
+        } catch (IOException | RuntimeException e) {
+            // Missing, being evicted or written by an incompatible version
+            return null;
+        }
+    }
+
+    private void write(Path entryFile, Stored stored) {
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(directory, entryFile.getFileName().toString(), TEMP_SUFFIX);
+            try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(ModuleInfoBinary.FORMAT_VERSION);
+                out.writeUTF(stored.source());
+                out.writeLong(stored.size());
+                out.writeLong(stored.lastModified());
+                out.writeLong(stored.crc());
+                out.writeBoolean(stored.parsed().isPresent());
+                if (stored.parsed().isPresent()) {
+                    ModuleInfoBinary.write(stored.parsed().get().moduleInfo(), out);
+                    ModuleInfoBinary.writeExports(stored.parsed().get().opens(), out);
+                }
+            }
+            try {
+                Files.move(temp, entryFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, entryFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException | RuntimeException e) {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private void hit(Path entryFile) {
+        hits.increment();
+        // Eviction goes by modification time, which is only refreshed now and then
+        // so that warm lookups stay read-only
+        try {
+            if (isOlderThan(Files.getLastModifiedTime(entryFile), TOUCH_INTERVAL)) {
+                Files.setLastModifiedTime(entryFile, FileTime.from(Instant.now()));
+            }
+        } catch (IOException e) {
+            // Evicted in the meantime
+        }
+    }
+
+    private static boolean isOlderThan(FileTime time, Duration age) {
+        return Duration.between(time.toInstant(), Instant.now()).compareTo(age) > 0;
+    }
+
+    private static long crc(ByteBuffer buffer) {
+        var crc = new CRC32();
+        crc.update(buffer);
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,285 @@
+package dev.mccue.module_info;
+
+import org.jspecify.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.module.FindException;
+import java.lang.module.ModuleDescriptor;
+import java.lang.module.ModuleFinder;
+import java.lang.module.ModuleReader;
+import java.lang.module.ModuleReference;
+import java.net.URI;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Stream;
+import java.util.zip.ZipFile;
+
+/// A {@link ModuleFinder} over module infos that have already been read, so
+/// that resolving a {@link java.lang.module.Configuration} does not open and
+/// parse every module a second time.
+///
+/// Each {@link ModuleReference}'s descriptor is made with
+/// {@link ModuleInfo#toModuleDescriptor()} the first time the module is found.
+/// A module info has no `opens`, so those are given alongside it, as
+/// {@link ModulePathScanner} and {@link WatchingModuleIndex} capture them when
+/// they parse each module. When a module info has no packages, as when its jar
+/// was built without a `ModulePackages` attribute, the packages of a jar are
+/// taken from its central directory, as {@link ModularJars#packagesOf(Path)}
+/// does, and those of an exploded module from its class files. Otherwise a
+/// module's jar is only opened once its {@link ModuleReader} is asked for content.
+///
+/// Jars (including multi-release jars) and exploded modules are supported.
+public final class ModuleInfoFinder implements ModuleFinder {
+    private final Map<String, ModuleInfo> modules;
+    private final Map<String, Path> locations;
+    private final Map<String, List<Export>> opens;
+    private final Map<String, ModuleReference> references = new ConcurrentHashMap<>();
+
+    private ModuleInfoFinder(
+            Map<String, ModuleInfo> modules,
+            Map<String, Path> locations,
+            Map<String, List<Export>> opens
+    ) {
+        this.modules = new LinkedHashMap<>();
+        this.locations = new LinkedHashMap<>();
+        this.opens = new LinkedHashMap<>();
+        for (var entry : modules.entrySet()) {
+            var location = locations.get(entry.getKey());
+            if (location == null) {
+                throw new IllegalArgumentException("No location for module " + entry.getKey());
+            }
+            this.modules.put(entry.getKey(), entry.getValue());
+            this.locations.put(entry.getKey(), location);
+            this.opens.put(entry.getKey(), List.copyOf(opens.getOrDefault(entry.getKey(), List.of())));
+        }
+    }
+
+    /// A finder for `modules`, keyed by name, each found at the path of the same
+    /// name in `locations`, and none of them with any `opens`.
+    public static ModuleInfoFinder of(Map<String, ModuleInfo> modules, Map<String, Path> locations) {
+        return new ModuleInfoFinder(modules, locations, Map.of());
+    }
+
+    /// A finder for `modules`, keyed by name, each found at the path of the same
+    /// name in `locations` and with the opens of the same name in `opens`.
+    /// Modules missing from `opens` have none.
+    public static ModuleInfoFinder of(
+            Map<String, ModuleInfo> modules,
+            Map<String, Path> locations,
+            Map<String, List<Export>> opens
+    ) {
+        return new ModuleInfoFinder(modules, locations, opens);
+    }
+
+    public static ModuleInfoFinder of(ModulePathScanner.Result result) {
+        return of(result.modules(), result.locations(), result.opens());
+    }
+
+    public static ModuleInfoFinder of(WatchingModuleIndex.Snapshot snapshot) {
+        return of(snapshot.modules(), snapshot.locations(), snapshot.opens());
+    }
+
+    @Override
+    public Optional<ModuleReference> find(String name) {
+        Objects.requireNonNull(name);
+        if (!modules.containsKey(name)) {
+            return Optional.empty();
+        }
+        return Optional.of(references.computeIfAbsent(name, this::reference));
+    }
+
+    @Override
+    public Set<ModuleReference> findAll() {
+        var all = new HashSet<ModuleReference>();
+        for (var name : modules.keySet()) {
+            all.add(references.computeIfAbsent(name, this::reference));
+        }
+        return Set.copyOf(all);
+    }
+
+    private ModuleReference reference(String name) {
+        var moduleInfo = modules.get(name);
+        var location = locations.get(name);
+        try {
+            boolean exploded = Files.isDirectory(location);
+            Set<String> packages = Set.of();
+            if (moduleInfo.packages().isEmpty()) {
+                if (exploded) {
+                    packages = explodedPackages(location);
+                } else {
+                    try (var channel = FileChannel.open(location)) {
+                        packages = ModularJars.packageNames(ZipCentralDirectory.read(ZipSource.of(channel)));
+                    }
+                }
+            }
+            var descriptor = moduleInfo.toModuleDescriptor(packages, opens.get(name));
+            return exploded
+                    ? new ExplodedModuleReference(descriptor, location)
+                    : new JarModuleReference(descriptor, location);
+        } catch (IOException e) {
+            throw new FindException("Error reading " + location, e);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            throw new FindException("Invalid module info for " + name + " in " + location, e);
+        }
+    }
+
+    private static Set<String> explodedPackages(Path directory) throws IOException {
+        var packages = new HashSet<String>();
+        try (var files = Files.walk(directory)) {
+            for (var file : (Iterable<Path>) files::iterator) {
+                var relative = directory.relativize(file);
+                if (relative.getNameCount() > 1
+                        && !relative.startsWith("META-INF")
+                        && relative.getFileName().toString().endsWith(".class")
+                        && Files.isRegularFile(file)) {
+                    packages.add(relative.getParent().toString().replace(file.getFileSystem().getSeparator(), "."));
+                }
+            }
+        }
+        return packages;
+    }
+
+    private static final class JarModuleReference extends ModuleReference {
+        private final Path jar;
+
+        JarModuleReference(ModuleDescriptor descriptor, Path jar) {
+            super(descriptor, jar.toUri());
+            this.jar = jar;
+        }
+
+        @Override
+        public ModuleReader open() {
+            return new JarModuleReader(jar);
+        }
+    }
+
+    /// Opens the jar on first use and reads it as the running JDK's version.
+    private static final class JarModuleReader implements ModuleReader {
+        private final Path jar;
+        private final URI uri;
+        private @Nullable JarFile jarFile;
+        private boolean closed;
+
+        JarModuleReader(Path jar) {
+            this.jar = jar;
+            this.uri = jar.toUri();
+        }
+
+        private synchronized JarFile jarFile() throws IOException {
+            if (closed) {
+                throw new IOException("ModuleReader is closed");
+            }
+            if (jarFile == null) {
+                jarFile = new JarFile(jar.toFile(), false, ZipFile.OPEN_READ, JarFile.runtimeVersion());
+            }
+            return jarFile;
+        }
+
+        @Override
+        public Optional<URI> find(String name) throws IOException {
+            var entry = jarFile().getJarEntry(name);
+            if (entry == null) {
+                return Optional.empty();
+            }
+            // A versioned entry has its real name, which is where its content is
+            return Optional.of(URI.create("jar:" + uri + "!/" + entry.getRealName()));
+        }
+
+        @Override
+        public Optional<InputStream> open(String name) throws IOException {
+            var jarFile = jarFile();
+            var entry = jarFile.getJarEntry(name);
+            return entry == null ? Optional.empty() : Optional.of(jarFile.getInputStream(entry));
+        }
+
+        @Override
+        public Stream<String> list() throws IOException {
+            return jarFile().versionedStream().map(JarEntry::getName);
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            closed = true;
+            if (jarFile != null) {
+                jarFile.close();
+                jarFile = null;
+            }
+        }
+    }
+
+    private static final class ExplodedModuleReference extends ModuleReference {
+        private final Path directory;
+
+        ExplodedModuleReference(ModuleDescriptor descriptor, Path directory) {
+            super(descriptor, directory.toUri());
+            this.directory = directory;
+        }
+
+        @Override
+        public ModuleReader open() {
+            return new ExplodedModuleReader(directory);
+        }
+    }
+
+    private static final class ExplodedModuleReader implements ModuleReader {
+        private final Path directory;
+        private volatile boolean closed;
+
+        ExplodedModuleReader(Path directory) {
+            this.directory = directory.toAbsolutePath().normalize();
+        }
+
+        private @Nullable Path resolve(String name) throws IOException {
+            if (closed) {
+                throw new IOException("ModuleReader is closed");
+            }
+            var file = directory.resolve(name).normalize();
+            return file.startsWith(directory) && Files.exists(file) ? file : null;
+        }
+
+        @Override
+        public Optional<URI> find(String name) throws IOException {
+            var file = resolve(name);
+            return file == null ? Optional.empty() : Optional.of(file.toUri());
+        }
+
+        @Override
+        public Optional<InputStream> open(String name) throws IOException {
+            var file = resolve(name);
+            return file == null || !Files.isRegularFile(file)
+                    ? Optional.empty()
+                    : Optional.of(Files.newInputStream(file));
+        }
+
+        @Override
+        public Stream<String> list() throws IOException {
+            if (closed) {
+                throw new IOException("ModuleReader is closed");
+            }
+            var separator = directory.getFileSystem().getSeparator();
+            return Files.walk(directory)
+                    .filter(file -> !file.equals(directory))
+                    .map(file -> {
+                        var name = directory.relativize(file).toString().replace(separator, "/");
+                        return Files.isDirectory(file) ? name + "/" : name;
+                    });
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
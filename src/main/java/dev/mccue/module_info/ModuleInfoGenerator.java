@@ -0,0 +1,570 @@
+package dev.mccue.module_info;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.classfile.ClassFile;
+import java.lang.classfile.ClassModel;
+import java.lang.classfile.CodeModel;
+import java.lang.classfile.Instruction;
+import java.lang.classfile.Label;
+import java.lang.classfile.Opcode;
+import java.lang.classfile.TypeKind;
+import java.lang.classfile.constantpool.ClassEntry;
+import java.lang.classfile.constantpool.MethodTypeEntry;
+import java.lang.classfile.constantpool.NameAndTypeEntry;
+import java.lang.classfile.instruction.ArrayLoadInstruction;
+import java.lang.classfile.instruction.ArrayStoreInstruction;
+import java.lang.classfile.instruction.BranchInstruction;
+import java.lang.classfile.instruction.ConstantInstruction;
+import java.lang.classfile.instruction.FieldInstruction;
+import java.lang.classfile.instruction.IncrementInstruction;
+import java.lang.classfile.instruction.InvokeDynamicInstruction;
+import java.lang.classfile.instruction.InvokeInstruction;
+import java.lang.classfile.instruction.LabelTarget;
+import java.lang.classfile.instruction.LoadInstruction;
+import java.lang.classfile.instruction.LookupSwitchInstruction;
+import java.lang.classfile.instruction.MonitorInstruction;
+import java.lang.classfile.instruction.NewMultiArrayInstruction;
+import java.lang.classfile.instruction.NewObjectInstruction;
+import java.lang.classfile.instruction.NewPrimitiveArrayInstruction;
+import java.lang.classfile.instruction.NewReferenceArrayInstruction;
+import java.lang.classfile.instruction.NopInstruction;
+import java.lang.classfile.instruction.ReturnInstruction;
+import java.lang.classfile.instruction.StackInstruction;
+import java.lang.classfile.instruction.StoreInstruction;
+import java.lang.classfile.instruction.TableSwitchInstruction;
+import java.lang.classfile.instruction.ThrowInstruction;
+import java.lang.classfile.instruction.TypeCheckInstruction;
+import java.lang.constant.ConstantDescs;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.jar.JarFile;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+/// Generates a {@link ModuleInfo} for a jar that does not have one, in the
+/// spirit of `jdeps --generate-module-info`.
+///
+/// - `packages` are the packages of the jar's class entries, as found by
+///   {@link ModularJars#packagesOf(Path)}, and every one of them is exported.
+/// - `provides` come from the provider configuration files in `META-INF/services`.
+/// - `uses` are the services whose class literal is passed as the `Class`
+///   argument of `ServiceLoader.load` or `ServiceLoader.loadInstalled`, whatever
+///   the other arguments are. A literal that only reaches the call through a
+///   local variable, a field or another method is not seen.
+/// - `requires` are the modules that export, without qualification, a package
+///   that the jar's classes refer to. Packages that none of the known modules
+///   export are left out, as is `java.base`, which is always required.
+///
+/// The modules to resolve against are given up front, and should include the
+/// system modules from {@link ModuleInfo#systemModules(Path)} as well as the
+/// module path. When more than one of them exports a package, the first one wins.
+///
+/// Class entries are parsed on virtual threads in batches, and only their
+/// constant pools, field and method descriptors and code are looked at. The
+/// versioned classes of a multi-release jar are not analyzed.
+public final class ModuleInfoGenerator {
+    private static final int BATCH_SIZE = 256;
+    private static final String SERVICES = "META-INF/services/";
+    private static final Pattern VERSION = Pattern.compile("-(\\d+(\\.|$))");
+    private static final Pattern NON_ALPHANUMERIC = Pattern.compile("[^A-Za-z0-9]");
+    private static final Pattern REPEATING_DOTS = Pattern.compile("(\\.)(\\1)+");
+
+    private final Map<String, String> exporters;
+
+    private ModuleInfoGenerator(Collection<ModuleInfo> modules) {
+        this.exporters = new HashMap<>();
+        for (var module : modules) {
+            for (var export : module.exports()) {
+                if (export.to().isEmpty()) {
+                    exporters.putIfAbsent(export.package_().name(), module.name());
+                }
+            }
+        }
+    }
+
+    /// A generator that resolves requires against `modules`.
+    public static ModuleInfoGenerator of(Collection<ModuleInfo> modules) {
+        return new ModuleInfoGenerator(modules);
+    }
+
+    /// Generates a module info for `jar`, named by its `Automatic-Module-Name`
+    /// or, failing that, by its file name the same way
+    /// {@link java.lang.module.ModuleFinder#of(Path...)} names automatic modules.
+    public ModuleInfo generate(Path jar) throws IOException, InterruptedException {
+        var packages = ModularJars.packageNames(jar);
+        try (var zipFile = new JarFile(jar.toFile(), false)) {
+            var manifest = zipFile.getManifest();
+            var name = manifest == null
+                    ? null
+                    : manifest.getMainAttributes().getValue("Automatic-Module-Name");
+            return generate(zipFile, name == null ? automaticModuleName(jar) : name, packages);
+        }
+    }
+
+    public ModuleInfo generate(Path jar, String moduleName) throws IOException, InterruptedException {
+        var packages = ModularJars.packageNames(jar);
+        try (var zipFile = new ZipFile(jar.toFile())) {
+            return generate(zipFile, moduleName, packages);
+        }
+    }
+
+    private ModuleInfo generate(
+            ZipFile zipFile,
+            String moduleName,
+            SortedSet<String> packages
+    ) throws IOException, InterruptedException {
+        var classEntries = new ArrayList<ZipEntry>();
+        var serviceEntries = new ArrayList<ZipEntry>();
+        var entries = zipFile.entries();
+        while (entries.hasMoreElements()) {
+            var entry = entries.nextElement();
+            var entryName = entry.getName();
+            if (entry.isDirectory()) {
+                continue;
+            }
+            if (entryName.startsWith(SERVICES) && entryName.indexOf('/', SERVICES.length()) < 0) {
+                serviceEntries.add(entry);
+            }
+            else if (entryName.endsWith(".class")
+                    && !entryName.startsWith("META-INF/")
+                    && !entryName.equals("module-info.class")) {
+                classEntries.add(entry);
+            }
+        }
+
+        var references = analyze(zipFile, classEntries);
+
+        var requires = new TreeSet<String>();
+        for (var package_ : references.packages) {
+            if (packages.contains(package_)) {
+                continue;
+            }
+            var exporter = exporters.get(package_);
+            if (exporter != null && !exporter.equals("java.base") && !exporter.equals(moduleName)) {
+                requires.add(exporter);
+            }
+        }
+
+        var provides = new TreeMap<String, Provide>();
+        for (var entry : serviceEntries) {
+            var service = entry.getName().substring(SERVICES.length());
+            var providers = providers(zipFile, entry);
+            if (!service.isEmpty() && !providers.isEmpty()) {
+                provides.put(service, new Provide(service, providers));
+            }
+        }
+
+        return new ModuleInfo(
+                moduleName,
+                packages.stream().map(Export::new).toList(),
+                requires.stream().map(Require::new).toList(),
+                List.copyOf(provides.values()),
+                references.uses.stream().map(Use::new).toList(),
+                Optional.empty(),
+                false,
+                false,
+                false,
+                packages.stream().map(Package::new).toList(),
+                List.of(),
+                Optional.empty(),
+                Optional.empty()
+        );
+    }
+
+    private static final class References {
+        final Set<String> packages = new HashSet<>();
+        final Set<String> uses = new TreeSet<>();
+
+        void add(References other) {
+            packages.addAll(other.packages);
+            uses.addAll(other.uses);
+        }
+    }
+
+    private static References analyze(
+            ZipFile zipFile,
+            List<ZipEntry> classEntries
+    ) throws IOException, InterruptedException {
+        var references = new References();
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var futures = new ArrayList<Future<References>>();
+            for (int start = 0; start < classEntries.size(); start += BATCH_SIZE) {
+                var batch = classEntries.subList(start, Math.min(classEntries.size(), start + BATCH_SIZE));
+                futures.add(executor.submit((Callable<References>) () -> analyzeBatch(zipFile, batch)));
+            }
+            for (var future : futures) {
+                try {
+                    references.add(future.get());
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException io) {
+                        throw io;
+                    }
+                    if (e.getCause() instanceof RuntimeException runtime) {
+                        throw runtime;
+                    }
+                    if (e.getCause() instanceof Error error) {
+                        throw error;
+                    }
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+        }
+        return references;
+    }
+
+    private static References analyzeBatch(ZipFile zipFile, List<ZipEntry> batch) throws IOException {
+        var references = new References();
+        var classFile = ClassFile.of();
+        for (var entry : batch) {
+            byte[] bytes;
+            try (var inputStream = zipFile.getInputStream(entry)) {
+                bytes = inputStream.readAllBytes();
+            }
+            ClassModel classModel;
+            try {
+                classModel = classFile.parse(bytes);
+            } catch (IllegalArgumentException e) {
+                throw new ZipException("Malformed class file " + entry.getName() + ": " + e.getMessage());
+            }
+            analyzeClass(classModel, references);
+        }
+        return references;
+    }
+
+    private static void analyzeClass(ClassModel classModel, References references) {
+        for (var poolEntry : classModel.constantPool()) {
+            switch (poolEntry) {
+                case ClassEntry classEntry -> addClass(classEntry.asInternalName(), references.packages);
+                case NameAndTypeEntry nameAndType -> addDescriptor(nameAndType.type().stringValue(), references.packages);
+                case MethodTypeEntry methodType -> addDescriptor(methodType.descriptor().stringValue(), references.packages);
+                default -> {
+                }
+            }
+        }
+        for (var field : classModel.fields()) {
+            addDescriptor(field.fieldType().stringValue(), references.packages);
+        }
+        for (var method : classModel.methods()) {
+            addDescriptor(method.methodType().stringValue(), references.packages);
+            method.code().ifPresent(code -> addUses(code, references.uses));
+        }
+    }
+
+    /// Finds `ServiceLoader.load` and `ServiceLoader.loadInstalled` calls whose
+    /// `Class` argument is a class literal.
+    ///
+    /// The operand stack is simulated slot by slot, so the literal is found
+    /// whatever else is passed alongside it, as in
+    /// `ServiceLoader.load(Foo.class, Foo.class.getClassLoader())`, and the stack
+    /// at a branch is carried over to its target. What arithmetic and conversions
+    /// do is not followed: they forget the stack, so a literal pushed before one
+    /// of them in the same expression is missed, but never misattributed.
+    private static void addUses(CodeModel code, Set<String> uses) {
+        var stack = new OperandStack();
+        var atLabels = new HashMap<Label, OperandStack>();
+        for (var handler : code.exceptionHandlers()) {
+            var caught = new OperandStack();
+            caught.pushUnknown(1);
+            atLabels.put(handler.handler(), caught);
+        }
+        boolean reachable = true;
+        for (var element : code) {
+            if (element instanceof LabelTarget target) {
+                if (!reachable) {
+                    var saved = atLabels.get(target.label());
+                    stack = saved == null ? new OperandStack() : saved.copy();
+                    reachable = true;
+                }
+                continue;
+            }
+            if (!(element instanceof Instruction instruction)) {
+                continue;
+            }
+            switch (instruction) {
+                case LoadInstruction load -> stack.pushUnknown(load.typeKind().slotSize());
+                case StoreInstruction store -> stack.pop(store.typeKind().slotSize());
+                case ConstantInstruction.LoadConstantInstruction ldc
+                        when ldc.constantEntry() instanceof ClassEntry classEntry -> stack.push(classEntry);
+                case ConstantInstruction constant -> stack.pushUnknown(constant.typeKind().slotSize());
+                case FieldInstruction field -> {
+                    int size = TypeKind.from(field.typeSymbol()).slotSize();
+                    switch (field.opcode()) {
+                        case GETSTATIC -> stack.pushUnknown(size);
+                        case GETFIELD -> {
+                            stack.pop(1);
+                            stack.pushUnknown(size);
+                        }
+                        case PUTSTATIC -> stack.pop(size);
+                        default -> stack.pop(size + 1);
+                    }
+                }
+                case InvokeInstruction invoke -> {
+                    var type = invoke.typeSymbol();
+                    Object service = null;
+                    for (int i = type.parameterCount() - 1; i >= 0; i--) {
+                        var parameter = type.parameterType(i);
+                        if (parameter.equals(ConstantDescs.CD_Class)) {
+                            service = stack.pop();
+                        }
+                        else {
+                            stack.pop(TypeKind.from(parameter).slotSize());
+                        }
+                    }
+                    if (invoke.opcode() != Opcode.INVOKESTATIC) {
+                        stack.pop(1);
+                    }
+                    if (service instanceof ClassEntry classEntry
+                            && invoke.owner().asInternalName().equals("java/util/ServiceLoader")
+                            && (invoke.name().equalsString("load") || invoke.name().equalsString("loadInstalled"))
+                            && !classEntry.asInternalName().startsWith("[")) {
+                        uses.add(classEntry.asInternalName().replace('/', '.'));
+                    }
+                    stack.pushUnknown(TypeKind.from(type.returnType()).slotSize());
+                }
+                case InvokeDynamicInstruction invokeDynamic -> {
+                    var type = invokeDynamic.typeSymbol();
+                    for (int i = type.parameterCount() - 1; i >= 0; i--) {
+                        stack.pop(TypeKind.from(type.parameterType(i)).slotSize());
+                    }
+                    stack.pushUnknown(TypeKind.from(type.returnType()).slotSize());
+                }
+                case NewObjectInstruction ignored -> stack.pushUnknown(1);
+                case NewPrimitiveArrayInstruction ignored -> {
+                    stack.pop(1);
+                    stack.pushUnknown(1);
+                }
+                case NewReferenceArrayInstruction ignored -> {
+                    stack.pop(1);
+                    stack.pushUnknown(1);
+                }
+                case NewMultiArrayInstruction array -> {
+                    stack.pop(array.dimensions());
+                    stack.pushUnknown(1);
+                }
+                case TypeCheckInstruction check -> {
+                    if (check.opcode() == Opcode.INSTANCEOF) {
+                        stack.pop(1);
+                        stack.pushUnknown(1);
+                    }
+                }
+                case ArrayLoadInstruction load -> {
+                    stack.pop(2);
+                    stack.pushUnknown(load.typeKind().slotSize());
+                }
+                case ArrayStoreInstruction store -> stack.pop(2 + store.typeKind().slotSize());
+                case MonitorInstruction ignored -> stack.pop(1);
+                case StackInstruction ignored -> {
+                    switch (instruction.opcode()) {
+                        case POP -> stack.pop(1);
+                        case POP2 -> stack.pop(2);
+                        case DUP -> stack.dup(1, 0);
+                        case DUP_X1 -> stack.dup(1, 1);
+                        case DUP_X2 -> stack.dup(1, 2);
+                        case DUP2 -> stack.dup(2, 0);
+                        case DUP2_X1 -> stack.dup(2, 1);
+                        case DUP2_X2 -> stack.dup(2, 2);
+                        default -> stack.swap();
+                    }
+                }
+                case BranchInstruction branch -> {
+                    switch (branch.opcode()) {
+                        case GOTO, GOTO_W -> reachable = false;
+                        case IF_ICMPEQ, IF_ICMPNE, IF_ICMPLT, IF_ICMPGE, IF_ICMPGT, IF_ICMPLE,
+                             IF_ACMPEQ, IF_ACMPNE -> stack.pop(2);
+                        default -> stack.pop(1);
+                    }
+                    atLabels.putIfAbsent(branch.target(), stack.copy());
+                }
+                case TableSwitchInstruction tableSwitch -> {
+                    stack.pop(1);
+                    atLabels.putIfAbsent(tableSwitch.defaultTarget(), stack.copy());
+                    for (var switchCase : tableSwitch.cases()) {
+                        atLabels.putIfAbsent(switchCase.target(), stack.copy());
+                    }
+                    reachable = false;
+                }
+                case LookupSwitchInstruction lookupSwitch -> {
+                    stack.pop(1);
+                    atLabels.putIfAbsent(lookupSwitch.defaultTarget(), stack.copy());
+                    for (var switchCase : lookupSwitch.cases()) {
+                        atLabels.putIfAbsent(switchCase.target(), stack.copy());
+                    }
+                    reachable = false;
+                }
+                case ReturnInstruction ignored -> reachable = false;
+                case ThrowInstruction ignored -> reachable = false;
+                case IncrementInstruction ignored -> {
+                }
+                case NopInstruction ignored -> {
+                }
+                default -> stack.clear();
+            }
+        }
+    }
+
+    /// The operand stack of a method as far as {@link #addUses} follows it, one
+    /// entry per slot: the class entry of a class literal, or {@link #UNKNOWN}.
+    /// Popping more than it holds gives {@link #UNKNOWN}, which is what a stack
+    /// that was forgotten partway through a method looks like.
+    private static final class OperandStack {
+        static final Object UNKNOWN = new Object();
+
+        private final ArrayList<Object> slots;
+
+        OperandStack() {
+            this(new ArrayList<>());
+        }
+
+        private OperandStack(ArrayList<Object> slots) {
+            this.slots = slots;
+        }
+
+        void push(Object value) {
+            slots.add(value);
+        }
+
+        void pushUnknown(int count) {
+            for (int i = 0; i < count; i++) {
+                slots.add(UNKNOWN);
+            }
+        }
+
+        Object pop() {
+            return slots.isEmpty() ? UNKNOWN : slots.removeLast();
+        }
+
+        void pop(int count) {
+            for (int i = 0; i < count; i++) {
+                pop();
+            }
+        }
+
+        /// Copies the top `count` slots to below the `depth` slots under them,
+        /// the way the `dup` instructions do.
+        void dup(int count, int depth) {
+            while (slots.size() < count + depth) {
+                slots.addFirst(UNKNOWN);
+            }
+            var top = new ArrayList<>(slots.subList(slots.size() - count, slots.size()));
+            slots.addAll(slots.size() - count - depth, top);
+        }
+
+        void swap() {
+            var first = pop();
+            var second = pop();
+            slots.add(first);
+            slots.add(second);
+        }
+
+        void clear() {
+            slots.clear();
+        }
+
+        OperandStack copy() {
+            return new OperandStack(new ArrayList<>(slots));
+        }
+    }
+
+    private static void addClass(String internalName, Set<String> packages) {
+        if (internalName.startsWith("[")) {
+            addDescriptor(internalName, packages);
+        }
+        else {
+            var package_ = packageOf(internalName);
+            if (package_ != null) {
+                packages.add(package_);
+            }
+        }
+    }
+
+    private static void addDescriptor(String descriptor, Set<String> packages) {
+        int i = 0;
+        while (i < descriptor.length()) {
+            if (descriptor.charAt(i) == 'L') {
+                int end = descriptor.indexOf(';', i);
+                if (end < 0) {
+                    return;
+                }
+                int slash = descriptor.lastIndexOf('/', end);
+                if (slash > i) {
+                    packages.add(descriptor.substring(i + 1, slash).replace('/', '.'));
+                }
+                i = end + 1;
+            }
+            else {
+                i++;
+            }
+        }
+    }
+
+    /// The package of an internal name, or `null` for the unnamed package.
+    private static String packageOf(String name) {
+        int slash = name.lastIndexOf('/');
+        return slash < 0 ? null : name.substring(0, slash).replace('/', '.');
+    }
+
+    private static List<String> providers(ZipFile zipFile, ZipEntry entry) throws IOException {
+        var providers = new LinkedHashSet<String>();
+        try (var reader = new BufferedReader(new InputStreamReader(
+                zipFile.getInputStream(entry),
+                StandardCharsets.UTF_8
+        ))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int comment = line.indexOf('#');
+                if (comment >= 0) {
+                    line = line.substring(0, comment);
+                }
+                line = line.strip();
+                if (!line.isEmpty()) {
+                    providers.add(line);
+                }
+            }
+        }
+        return List.copyOf(providers);
+    }
+
+    /// The name {@link java.lang.module.ModuleFinder} gives an automatic module
+    /// for a jar without an `Automatic-Module-Name`.
+    static String automaticModuleName(Path jar) {
+        var name = jar.getFileName().toString();
+        if (name.endsWith(".jar")) {
+            name = name.substring(0, name.length() - 4);
+        }
+        var version = VERSION.matcher(name);
+        if (version.find()) {
+            name = name.substring(0, version.start());
+        }
+        name = NON_ALPHANUMERIC.matcher(name).replaceAll(".");
+        name = REPEATING_DOTS.matcher(name).replaceAll(".");
+        int start = 0;
+        int end = name.length();
+        while (start < end && name.charAt(start) == '.') {
+            start++;
+        }
+        while (end > start && name.charAt(end - 1) == '.') {
+            end--;
+        }
+        return name.substring(start, end);
+    }
+}
@@ -0,0 +1,84 @@
+package dev.mccue.module_info;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+import org.jspecify.annotations.Nullable;
+
+/// Emitted for every jar or jmod searched for its `module-info.class`.
+///
+/// The duration covers everything read from the jar, from its directory to the
+/// entry, along with inflating and parsing the entry. Parsing is also recorded
+/// on its own as a {@link ModuleInfoParseEvent}.
+@Name("dev.mccue.module_info.ModuleInfoJarScan")
+@Label("Module Info Jar Scan")
+@Category({ "Java Application", "Module Info" })
+@Description("Search of a jar or jmod for its module-info.class")
+@StackTrace(false)
+final class ModuleInfoJarScanEvent extends jdk.jfr.Event {
+    @Label("Source")
+    @Description("How the jar was read: ZipFile, CentralDirectory or JarInputStream")
+    String source;
+
+    @Label("Path")
+    @Nullable String path;
+
+    @Label("Entries Visited")
+    int entriesVisited;
+
+    @Label("Entry")
+    @Description("The module-info.class entry that was read, if any, or the highest version one when every version was read")
+    @Nullable String entry;
+
+    @Label("Multi-Release")
+    @Description("Whether the entry that was read is under META-INF/versions")
+    boolean multiRelease;
+
+    @Label("Module Info Size")
+    @DataAmount
+    long moduleInfoBytes;
+
+    @Label("Bytes Read")
+    @Description("Bytes read from the jar, or -1 when that is not tracked")
+    @DataAmount
+    long bytesRead;
+
+    @Label("Inflate Time")
+    @Description("Time spent reading and inflating the entry, or 0 when that is not tracked")
+    @Timespan
+    long inflateNanos;
+
+    @Label("Parse Time")
+    @Description("Time spent parsing the entry, or 0 when that is not tracked")
+    @Timespan
+    long parseNanos;
+
+    void complete(
+            String source,
+            @Nullable String path,
+            int entriesVisited,
+            @Nullable String entry,
+            long moduleInfoBytes,
+            long bytesRead,
+            long inflateNanos,
+            long parseNanos
+    ) {
+        end();
+        if (shouldCommit()) {
+            this.source = source;
+            this.path = path;
+            this.entriesVisited = entriesVisited;
+            this.entry = entry;
+            this.multiRelease = entry != null && entry.contains("META-INF/versions/");
+            this.moduleInfoBytes = moduleInfoBytes;
+            this.bytesRead = bytesRead;
+            this.inflateNanos = inflateNanos;
+            this.parseNanos = parseNanos;
+            commit();
+        }
+    }
+}
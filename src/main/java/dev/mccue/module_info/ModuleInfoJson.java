@@ -0,0 +1,788 @@
+package dev.mccue.module_info;
+
+import org.jspecify.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/// Reads and writes module infos as JSON without reflection or any dependencies.
+///
+/// The JSON has the same shape Jackson produces from the annotations on the
+/// records, including the omission of `false`, empty lists and empty optionals
+/// from {@link ModuleInfo}, {@link Export} and {@link Require}, so the two can be
+/// used interchangeably. Output is streamed through a small buffer to the
+/// given {@link Writer} or {@link OutputStream}, and input is parsed as it is
+/// read, so neither builds a tree of the document.
+///
+/// Unknown fields are skipped when reading, and `null` is treated the same as
+/// a missing field.
+public final class ModuleInfoJson {
+    private ModuleInfoJson() {}
+
+    public static String toJson(ModuleInfo moduleInfo) {
+        var writer = new StringWriter();
+        try {
+            write(moduleInfo, writer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return writer.toString();
+    }
+
+    /// Writes `moduleInfo` as a single JSON object. The writer is flushed but not closed.
+    public static void write(ModuleInfo moduleInfo, Writer writer) throws IOException {
+        var output = new Output(writer);
+        output.moduleInfo(moduleInfo);
+        output.flush();
+    }
+
+    /// Writes `moduleInfo` as a single JSON object encoded as UTF-8. The stream is
+    /// flushed but not closed.
+    public static void write(ModuleInfo moduleInfo, OutputStream outputStream) throws IOException {
+        write(moduleInfo, new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+    }
+
+    /// Writes every module info as one line of newline delimited JSON. The writer is
+    /// flushed but not closed.
+    public static void writeAll(Iterable<ModuleInfo> moduleInfos, Writer writer) throws IOException {
+        var output = new Output(writer);
+        for (var moduleInfo : moduleInfos) {
+            output.moduleInfo(moduleInfo);
+            output.ch('\n');
+        }
+        output.flush();
+    }
+
+    public static void writeAll(Iterable<ModuleInfo> moduleInfos, OutputStream outputStream) throws IOException {
+        writeAll(moduleInfos, new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+    }
+
+    public static ModuleInfo fromJson(String json) {
+        try {
+            return read(new StringReader(json));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /// Reads a single JSON object. Anything after it is left unread, though some
+    /// of it may have been buffered.
+    ///
+    /// Malformed JSON is reported as an {@link IOException} giving the offset of the problem.
+    public static ModuleInfo read(Reader reader) throws IOException {
+        return new Input(reader).moduleInfo();
+    }
+
+    public static ModuleInfo read(InputStream inputStream) throws IOException {
+        return read(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+    }
+
+    /// Lazily reads a sequence of JSON objects separated by whitespace, such as
+    /// newline delimited JSON. Errors are thrown as {@link UncheckedIOException}
+    /// from the stream. The reader is not closed.
+    public static Stream<ModuleInfo> readAll(Reader reader) {
+        var input = new Input(reader);
+        var spliterator = new Spliterators.AbstractSpliterator<ModuleInfo>(
+                Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL
+        ) {
+            @Override
+            public boolean tryAdvance(Consumer<? super ModuleInfo> action) {
+                try {
+                    if (input.peek() == -1) {
+                        return false;
+                    }
+                    action.accept(input.moduleInfo());
+                    return true;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+        return StreamSupport.stream(spliterator, false);
+    }
+
+    public static Stream<ModuleInfo> readAll(InputStream inputStream) {
+        return readAll(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+    }
+
+    private static final class Output {
+        private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+        private final Writer writer;
+        private final char[] buffer = new char[8192];
+        private int length;
+
+        Output(Writer writer) {
+            this.writer = writer;
+        }
+
+        void moduleInfo(ModuleInfo moduleInfo) throws IOException {
+            ch('{');
+            boolean first = true;
+            if (!moduleInfo.name().isEmpty()) {
+                first = key("name", first);
+                string(moduleInfo.name());
+            }
+            if (!moduleInfo.exports().isEmpty()) {
+                first = key("exports", first);
+                ch('[');
+                for (int i = 0; i < moduleInfo.exports().size(); i++) {
+                    if (i > 0) {
+                        ch(',');
+                    }
+                    export(moduleInfo.exports().get(i));
+                }
+                ch(']');
+            }
+            if (!moduleInfo.requires().isEmpty()) {
+                first = key("requires", first);
+                ch('[');
+                for (int i = 0; i < moduleInfo.requires().size(); i++) {
+                    if (i > 0) {
+                        ch(',');
+                    }
+                    require(moduleInfo.requires().get(i));
+                }
+                ch(']');
+            }
+            if (!moduleInfo.provides().isEmpty()) {
+                first = key("provides", first);
+                ch('[');
+                for (int i = 0; i < moduleInfo.provides().size(); i++) {
+                    if (i > 0) {
+                        ch(',');
+                    }
+                    provide(moduleInfo.provides().get(i));
+                }
+                ch(']');
+            }
+            if (!moduleInfo.uses().isEmpty()) {
+                first = key("uses", first);
+                ch('[');
+                for (int i = 0; i < moduleInfo.uses().size(); i++) {
+                    if (i > 0) {
+                        ch(',');
+                    }
+                    ch('{');
+                    key("service", true);
+                    string(moduleInfo.uses().get(i).service());
+                    ch('}');
+                }
+                ch(']');
+            }
+            if (moduleInfo.version().isPresent()) {
+                first = key("version", first);
+                string(moduleInfo.version().get());
+            }
+            if (moduleInfo.open()) {
+                first = key("open", first);
+                raw("true");
+            }
+            if (moduleInfo.synthetic()) {
+                first = key("synthetic", first);
+                raw("true");
+            }
+            if (moduleInfo.mandated()) {
+                first = key("mandated", first);
+                raw("true");
+            }
+            if (!moduleInfo.packages().isEmpty()) {
+                first = key("packages", first);
+                ch('[');
+                for (int i = 0; i < moduleInfo.packages().size(); i++) {
+                    if (i > 0) {
+                        ch(',');
+                    }
+                    string(moduleInfo.packages().get(i).name());
+                }
+                ch(']');
+            }
+            if (!moduleInfo.hashes().isEmpty()) {
+                first = key("hashes", first);
+                ch('[');
+                for (int i = 0; i < moduleInfo.hashes().size(); i++) {
+                    if (i > 0) {
+                        ch(',');
+                    }
+                    hash(moduleInfo.hashes().get(i));
+                }
+                ch(']');
+            }
+            if (moduleInfo.mainClass().isPresent()) {
+                first = key("mainClass", first);
+                string(moduleInfo.mainClass().get());
+            }
+            if (moduleInfo.targetPlatform().isPresent()) {
+                key("targetPlatform", first);
+                string(moduleInfo.targetPlatform().get());
+            }
+            ch('}');
+        }
+
+        void export(Export export) throws IOException {
+            ch('{');
+            key("package", true);
+            string(export.package_().name());
+            if (!export.to().isEmpty()) {
+                key("to", false);
+                ch('[');
+                for (int i = 0; i < export.to().size(); i++) {
+                    if (i > 0) {
+                        ch(',');
+                    }
+                    string(export.to().get(i).module().name());
+                }
+                ch(']');
+            }
+            if (export.synthetic()) {
+                key("synthetic", false);
+                raw("true");
+            }
+            if (export.mandated()) {
+                key("mandated", false);
+                raw("true");
+            }
+            ch('}');
+        }
+
+        void require(Require require) throws IOException {
+            ch('{');
+            key("module", true);
+            string(require.module().name());
+            if (require.version().isPresent()) {
+                key("version", false);
+                string(require.version().get());
+            }
+            if (require.static_()) {
+                key("static", false);
+                raw("true");
+            }
+            if (require.transitive()) {
+                key("transitive", false);
+                raw("true");
+            }
+            if (require.mandated()) {
+                key("mandated", false);
+                raw("true");
+            }
+            if (require.synthetic()) {
+                key("synthetic", false);
+                raw("true");
+            }
+            ch('}');
+        }
+
+        void provide(Provide provide) throws IOException {
+            ch('{');
+            key("service", true);
+            string(provide.service());
+            key("with", false);
+            ch('[');
+            for (int i = 0; i < provide.with().size(); i++) {
+                if (i > 0) {
+                    ch(',');
+                }
+                string(provide.with().get(i));
+            }
+            ch(']');
+            ch('}');
+        }
+
+        void hash(Hash hash) throws IOException {
+            ch('{');
+            key("algorithm", true);
+            string(hash.algorithm());
+            key("hashes", false);
+            ch('[');
+            for (int i = 0; i < hash.hashes().size(); i++) {
+                if (i > 0) {
+                    ch(',');
+                }
+                var moduleHash = hash.hashes().get(i);
+                ch('{');
+                key("module", true);
+                string(moduleHash.module().name());
+                key("hash", false);
+                string(moduleHash.hash());
+                ch('}');
+            }
+            ch(']');
+            ch('}');
+        }
+
+        private boolean key(String name, boolean first) throws IOException {
+            if (!first) {
+                ch(',');
+            }
+            string(name);
+            ch(':');
+            return false;
+        }
+
+        /// Escapes the same characters Jackson does by default.
+        private void string(String value) throws IOException {
+            ch('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '"' -> {
+                        ch('\\');
+                        ch('"');
+                    }
+                    case '\\' -> {
+                        ch('\\');
+                        ch('\\');
+                    }
+                    case '\b' -> {
+                        ch('\\');
+                        ch('b');
+                    }
+                    case '\t' -> {
+                        ch('\\');
+                        ch('t');
+                    }
+                    case '\n' -> {
+                        ch('\\');
+                        ch('n');
+                    }
+                    case '\f' -> {
+                        ch('\\');
+                        ch('f');
+                    }
+                    case '\r' -> {
+                        ch('\\');
+                        ch('r');
+                    }
+                    default -> {
+                        if (c < 0x20) {
+                            raw("\\u00");
+                            ch(HEX[c >> 4]);
+                            ch(HEX[c & 0xF]);
+                        } else {
+                            ch(c);
+                        }
+                    }
+                }
+            }
+            ch('"');
+        }
+
+        private void raw(String value) throws IOException {
+            for (int i = 0; i < value.length(); i++) {
+                ch(value.charAt(i));
+            }
+        }
+
+        void ch(char c) throws IOException {
+            if (length == buffer.length) {
+                writer.write(buffer, 0, length);
+                length = 0;
+            }
+            buffer[length++] = c;
+        }
+
+        void flush() throws IOException {
+            writer.write(buffer, 0, length);
+            length = 0;
+            writer.flush();
+        }
+    }
+
+    private interface ValueReader<T> {
+        T read() throws IOException;
+    }
+
+    private static final class Input {
+        private final Reader reader;
+        private final char[] buffer = new char[8192];
+        private int position;
+        private int limit;
+        private long offset;
+
+        Input(Reader reader) {
+            this.reader = reader;
+        }
+
+        ModuleInfo moduleInfo() throws IOException {
+            String name = "";
+            List<Export> exports = List.of();
+            List<Require> requires = List.of();
+            List<Provide> provides = List.of();
+            List<Use> uses = List.of();
+            Optional<String> version = Optional.empty();
+            boolean open = false;
+            boolean synthetic = false;
+            boolean mandated = false;
+            List<Package> packages = List.of();
+            List<Hash> hashes = List.of();
+            Optional<String> mainClass = Optional.empty();
+            Optional<String> targetPlatform = Optional.empty();
+
+            expect('{');
+            for (var key = nextKey(); key != null; key = nextKey()) {
+                if (skipNull()) {
+                    continue;
+                }
+                switch (key) {
+                    case "name" -> name = string();
+                    case "exports" -> exports = list(this::export);
+                    case "requires" -> requires = list(this::require);
+                    case "provides" -> provides = list(this::provide);
+                    case "uses" -> uses = list(this::use);
+                    case "version" -> version = Optional.of(string());
+                    case "open" -> open = bool();
+                    case "synthetic" -> synthetic = bool();
+                    case "mandated" -> mandated = bool();
+                    case "packages" -> packages = list(() -> new Package(string()));
+                    case "hashes" -> hashes = list(this::hash);
+                    case "mainClass" -> mainClass = Optional.of(string());
+                    case "targetPlatform" -> targetPlatform = Optional.of(string());
+                    default -> skipValue();
+                }
+            }
+
+            return new ModuleInfo(
+                    name, exports, requires, provides, uses, version,
+                    open, synthetic, mandated,
+                    packages, hashes, mainClass, targetPlatform
+            );
+        }
+
+        private Export export() throws IOException {
+            String package_ = null;
+            List<ExportTo> to = List.of();
+            boolean synthetic = false;
+            boolean mandated = false;
+
+            expect('{');
+            for (var key = nextKey(); key != null; key = nextKey()) {
+                if (skipNull()) {
+                    continue;
+                }
+                switch (key) {
+                    case "package" -> package_ = string();
+                    case "to" -> to = list(() -> new ExportTo(string()));
+                    case "synthetic" -> synthetic = bool();
+                    case "mandated" -> mandated = bool();
+                    default -> skipValue();
+                }
+            }
+            return new Export(new Package(required(package_, "package")), to, synthetic, mandated);
+        }
+
+        private Require require() throws IOException {
+            String module = null;
+            Optional<String> version = Optional.empty();
+            boolean static_ = false;
+            boolean transitive = false;
+            boolean mandated = false;
+            boolean synthetic = false;
+
+            expect('{');
+            for (var key = nextKey(); key != null; key = nextKey()) {
+                if (skipNull()) {
+                    continue;
+                }
+                switch (key) {
+                    case "module" -> module = string();
+                    case "version" -> version = Optional.of(string());
+                    case "static" -> static_ = bool();
+                    case "transitive" -> transitive = bool();
+                    case "mandated" -> mandated = bool();
+                    case "synthetic" -> synthetic = bool();
+                    default -> skipValue();
+                }
+            }
+            return new Require(
+                    new Module(required(module, "module")),
+                    version, static_, transitive, mandated, synthetic
+            );
+        }
+
+        private Provide provide() throws IOException {
+            String service = null;
+            List<String> with = List.of();
+
+            expect('{');
+            for (var key = nextKey(); key != null; key = nextKey()) {
+                if (skipNull()) {
+                    continue;
+                }
+                switch (key) {
+                    case "service" -> service = string();
+                    case "with" -> with = list(this::string);
+                    default -> skipValue();
+                }
+            }
+            return new Provide(required(service, "service"), with);
+        }
+
+        private Use use() throws IOException {
+            String service = null;
+
+            expect('{');
+            for (var key = nextKey(); key != null; key = nextKey()) {
+                if (skipNull()) {
+                    continue;
+                }
+                if (key.equals("service")) {
+                    service = string();
+                } else {
+                    skipValue();
+                }
+            }
+            return new Use(required(service, "service"));
+        }
+
+        private Hash hash() throws IOException {
+            String algorithm = null;
+            List<ModuleHash> hashes = List.of();
+
+            expect('{');
+            for (var key = nextKey(); key != null; key = nextKey()) {
+                if (skipNull()) {
+                    continue;
+                }
+                switch (key) {
+                    case "algorithm" -> algorithm = string();
+                    case "hashes" -> hashes = list(this::moduleHash);
+                    default -> skipValue();
+                }
+            }
+            return new Hash(required(algorithm, "algorithm"), hashes);
+        }
+
+        private ModuleHash moduleHash() throws IOException {
+            String module = null;
+            String hash = null;
+
+            expect('{');
+            for (var key = nextKey(); key != null; key = nextKey()) {
+                if (skipNull()) {
+                    continue;
+                }
+                switch (key) {
+                    case "module" -> module = string();
+                    case "hash" -> hash = string();
+                    default -> skipValue();
+                }
+            }
+            return new ModuleHash(new Module(required(module, "module")), required(hash, "hash"));
+        }
+
+        private <T> List<T> list(ValueReader<T> element) throws IOException {
+            var list = new ArrayList<T>();
+            expect('[');
+            if (peek() == ']') {
+                position++;
+                return list;
+            }
+            while (true) {
+                list.add(element.read());
+                int c = peek();
+                position++;
+                if (c == ']') {
+                    return list;
+                }
+                if (c != ',') {
+                    throw error("Expected ',' or ']'");
+                }
+            }
+        }
+
+        /// The next key of the current object, or `null` when the object has ended.
+        private @Nullable String nextKey() throws IOException {
+            int c = peek();
+            if (c == '}') {
+                position++;
+                return null;
+            }
+            if (c == ',') {
+                position++;
+                c = peek();
+            }
+            if (c != '"') {
+                throw error("Expected a field name");
+            }
+            var key = string();
+            expect(':');
+            return key;
+        }
+
+        private String required(@Nullable String value, String field) throws IOException {
+            if (value == null) {
+                throw error("Missing field \"" + field + "\"");
+            }
+            return value;
+        }
+
+        private boolean skipNull() throws IOException {
+            if (peek() == 'n') {
+                literal("null");
+                return true;
+            }
+            return false;
+        }
+
+        private boolean bool() throws IOException {
+            int c = peek();
+            if (c == 't') {
+                literal("true");
+                return true;
+            }
+            if (c == 'f') {
+                literal("false");
+                return false;
+            }
+            throw error("Expected a boolean");
+        }
+
+        private String string() throws IOException {
+            expect('"');
+            var value = new StringBuilder();
+            while (true) {
+                if (position == limit && !fill()) {
+                    throw error("Unterminated string");
+                }
+                char c = buffer[position++];
+                if (c == '"') {
+                    return value.toString();
+                }
+                if (c != '\\') {
+                    value.append(c);
+                    continue;
+                }
+
+                if (position == limit && !fill()) {
+                    throw error("Unterminated string");
+                }
+                char escaped = buffer[position++];
+                switch (escaped) {
+                    case '"', '\\', '/' -> value.append(escaped);
+                    case 'b' -> value.append('\b');
+                    case 't' -> value.append('\t');
+                    case 'n' -> value.append('\n');
+                    case 'f' -> value.append('\f');
+                    case 'r' -> value.append('\r');
+                    case 'u' -> {
+                        int code = 0;
+                        for (int i = 0; i < 4; i++) {
+                            if (position == limit && !fill()) {
+                                throw error("Unterminated string");
+                            }
+                            int digit = Character.digit(buffer[position++], 16);
+                            if (digit < 0) {
+                                throw error("Invalid unicode escape");
+                            }
+                            code = (code << 4) | digit;
+                        }
+                        value.append((char) code);
+                    }
+                    default -> throw error("Invalid escape '\\" + escaped + "'");
+                }
+            }
+        }
+
+        private void skipValue() throws IOException {
+            int c = peek();
+            switch (c) {
+                case '"' -> string();
+                case '{' -> {
+                    position++;
+                    for (var key = nextKey(); key != null; key = nextKey()) {
+                        skipValue();
+                    }
+                }
+                case '[' -> list(() -> {
+                    skipValue();
+                    return Boolean.TRUE;
+                });
+                case 't' -> literal("true");
+                case 'f' -> literal("false");
+                case 'n' -> literal("null");
+                default -> {
+                    if (c != '-' && (c < '0' || c > '9')) {
+                        throw error("Unexpected character");
+                    }
+                    do {
+                        position++;
+                        if (position == limit && !fill()) {
+                            return;
+                        }
+                        c = buffer[position];
+                    } while ((c >= '0' && c <= '9') || c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-');
+                }
+            }
+        }
+
+        private void literal(String literal) throws IOException {
+            for (int i = 0; i < literal.length(); i++) {
+                if (position == limit && !fill()) {
+                    throw error("Expected " + literal);
+                }
+                if (buffer[position++] != literal.charAt(i)) {
+                    throw error("Expected " + literal);
+                }
+            }
+        }
+
+        private void expect(char expected) throws IOException {
+            if (peek() != expected) {
+                throw error("Expected '" + expected + "'");
+            }
+            position++;
+        }
+
+        /// Skips whitespace and returns the next character without consuming it,
+        /// or -1 at the end of the input.
+        int peek() throws IOException {
+            while (true) {
+                if (position == limit && !fill()) {
+                    return -1;
+                }
+                char c = buffer[position];
+                if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                    return c;
+                }
+                position++;
+            }
+        }
+
+        private boolean fill() throws IOException {
+            offset += limit;
+            position = 0;
+            limit = 0;
+            int read;
+            do {
+                read = reader.read(buffer, 0, buffer.length);
+            } while (read == 0);
+            if (read < 0) {
+                return false;
+            }
+            limit = read;
+            return true;
+        }
+
+        private IOException error(String message) {
+            return new IOException(message + " at offset " + (offset + position));
+        }
+    }
+}
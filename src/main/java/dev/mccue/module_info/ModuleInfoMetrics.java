@@ -0,0 +1,130 @@
+package dev.mccue.module_info;
+
+import org.jspecify.annotations.Nullable;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/// Process-wide counters for parsing module infos and scanning jars.
+///
+/// Counting is off until {@link #enable()} is called. While off, the only cost
+/// is a read of a volatile flag per operation. The same operations are also
+/// recorded as the JFR events `dev.mccue.module_info.ModuleInfoParse` and
+/// `dev.mccue.module_info.ModuleInfoJarScan`, which are controlled through JFR
+/// settings as usual and don't depend on these counters being enabled. The events
+/// are only recorded when the `jdk.jfr` module is present, since this module
+/// does not require it.
+public final class ModuleInfoMetrics {
+    static final long NOT_TIMED = Long.MIN_VALUE;
+
+    /// Whether `jdk.jfr` is there to be read, so that the event classes can be loaded.
+    static final boolean JFR_AVAILABLE = ModuleLayer.boot()
+            .findModule("jdk.jfr")
+            .map(ModuleInfoMetrics.class.getModule()::canRead)
+            .orElse(false);
+
+    private static volatile boolean enabled;
+
+    private static final LongAdder parses = new LongAdder();
+    private static final LongAdder bytesParsed = new LongAdder();
+    private static final LongAdder parseNanos = new LongAdder();
+    private static final LongAdder jarScans = new LongAdder();
+    private static final LongAdder entriesVisited = new LongAdder();
+    private static final LongAdder rootEntries = new LongAdder();
+    private static final LongAdder multiReleaseEntries = new LongAdder();
+    private static final LongAdder notModular = new LongAdder();
+    private static final LongAdder scanNanos = new LongAdder();
+
+    private ModuleInfoMetrics() {}
+
+    /// The counters at a point in time.
+    ///
+    /// @param parses How many `module-info.class` files were parsed.
+    /// @param bytesParsed The total size of those class files.
+    /// @param parseNanos Time spent parsing them.
+    /// @param jarScans How many jars and jmods were searched for a `module-info.class`.
+    /// @param entriesVisited Entries looked at while searching.
+    /// @param rootEntries Scans that used a root `module-info.class`.
+    /// @param multiReleaseEntries Scans that used one under `META-INF/versions`.
+    /// @param notModular Scans that found no `module-info.class` at all.
+    /// @param scanNanos Time spent scanning, including reading and parsing the entry.
+    public record Snapshot(
+            long parses,
+            long bytesParsed,
+            long parseNanos,
+            long jarScans,
+            long entriesVisited,
+            long rootEntries,
+            long multiReleaseEntries,
+            long notModular,
+            long scanNanos
+    ) {
+    }
+
+    public static void enable() {
+        enabled = true;
+    }
+
+    public static void disable() {
+        enabled = false;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static Snapshot snapshot() {
+        return new Snapshot(
+                parses.sum(),
+                bytesParsed.sum(),
+                parseNanos.sum(),
+                jarScans.sum(),
+                entriesVisited.sum(),
+                rootEntries.sum(),
+                multiReleaseEntries.sum(),
+                notModular.sum(),
+                scanNanos.sum()
+        );
+    }
+
+    /// Sets every counter back to zero.
+    public static void reset() {
+        parses.reset();
+        bytesParsed.reset();
+        parseNanos.reset();
+        jarScans.reset();
+        entriesVisited.reset();
+        rootEntries.reset();
+        multiReleaseEntries.reset();
+        notModular.reset();
+        scanNanos.reset();
+    }
+
+    static long start() {
+        return enabled ? System.nanoTime() : NOT_TIMED;
+    }
+
+    static void recordParse(long start, int bytes) {
+        if (start == NOT_TIMED || !enabled) {
+            return;
+        }
+        parses.increment();
+        bytesParsed.add(bytes);
+        parseNanos.add(System.nanoTime() - start);
+    }
+
+    static void recordJarScan(long start, int entries, @Nullable String entry) {
+        if (start == NOT_TIMED || !enabled) {
+            return;
+        }
+        jarScans.increment();
+        entriesVisited.add(entries);
+        if (entry == null) {
+            notModular.increment();
+        } else if (entry.contains("META-INF/versions/")) {
+            multiReleaseEntries.increment();
+        } else {
+            rootEntries.increment();
+        }
+        scanNanos.add(System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,23 @@
+package dev.mccue.module_info;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/// Emitted for every `module-info.class` parsed by {@link ModuleInfo#fromBytes(byte[])}.
+@Name("dev.mccue.module_info.ModuleInfoParse")
+@Label("Module Info Parse")
+@Category({ "Java Application", "Module Info" })
+@Description("Parsing of a module-info.class")
+@StackTrace(false)
+final class ModuleInfoParseEvent extends jdk.jfr.Event {
+    @Label("Module")
+    String module;
+
+    @Label("Class File Size")
+    @DataAmount
+    long bytes;
+}
@@ -0,0 +1,91 @@
+package dev.mccue.module_info;
+
+import java.io.IOException;
+import java.lang.classfile.ClassModel;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.zip.ZipFile;
+
+/// Parses {@link ModuleInfo}s, optionally sharing a pool of names between them.
+///
+/// A reader made with {@link #interning()} canonicalizes the {@link Module},
+/// {@link Package}, {@link ExportTo}, {@link Require} and {@link Use} records it
+/// produces, along with the strings inside them, so that every `ModuleInfo` read
+/// through it that mentions `java.base` shares a single `Module("java.base")`.
+/// This is worth it when many descriptors are kept in memory at once. The pool
+/// is never cleared, so it lives exactly as long as the reader.
+///
+/// Readers are safe to share between threads. Every reader parses with the same
+/// {@link java.lang.classfile.ClassFile} context, and entries read out of a
+/// {@link ZipFile} go through a shared pool of buffers and are parsed in place.
+public final class ModuleInfoReader {
+    private static final ModuleInfoReader PLAIN = new ModuleInfoReader(NamePool.NONE);
+
+    private final NamePool pool;
+
+    private ModuleInfoReader(NamePool pool) {
+        this.pool = pool;
+    }
+
+    /// A reader that behaves exactly like the static methods on {@link ModuleInfo}.
+    public static ModuleInfoReader of() {
+        return PLAIN;
+    }
+
+    /// A reader with its own, initially empty, pool of names.
+    public static ModuleInfoReader interning() {
+        return new ModuleInfoReader(new NamePool());
+    }
+
+    public ModuleInfo fromBytes(byte[] bytes) {
+        return ModuleInfo.fromBytes(bytes, pool);
+    }
+
+    /// Like {@link ModuleInfo#fromBytes(ByteBuffer)}, which parses without copying
+    /// the bytes out of the buffer.
+    public ModuleInfo fromBytes(ByteBuffer bytes) {
+        return ModuleInfo.fromBytes(bytes, pool);
+    }
+
+    public ModuleInfo from(ClassModel classModel) {
+        return ModuleInfo.from(classModel, pool);
+    }
+
+    public Optional<ModuleInfo> from(ZipFile jarFile) throws IOException {
+        return ModuleInfo.from(jarFile, pool);
+    }
+
+    public NavigableMap<Integer, ModuleInfo> allVersions(ZipFile jarFile) throws IOException {
+        return ModuleInfo.allVersions(jarFile, pool);
+    }
+
+    public Optional<ModuleInfo> from(ZipFile jarFile, Runtime.Version release) throws IOException {
+        return ModuleInfo.from(jarFile, release, pool);
+    }
+
+    public Optional<ModuleInfo> from(SeekableByteChannel channel) throws IOException {
+        return ModuleInfo.fromCentralDirectory(ZipSource.of(channel), pool);
+    }
+
+    /// How much the pool has been used so far.
+    ///
+    /// @param lookups How many names and records were looked up in the pool.
+    /// @param hits How many of those were already there.
+    /// @param distinct How many distinct names and records the pool holds.
+    /// @param estimatedBytesSaved An estimate of the heap that would otherwise be taken
+    ///                            up by duplicates, assuming compressed oops and compact
+    ///                            strings.
+    public record Stats(
+            long lookups,
+            long hits,
+            long distinct,
+            long estimatedBytesSaved
+    ) {
+    }
+
+    public Stats stats() {
+        return new Stats(pool.lookups(), pool.hits(), pool.distinct(), pool.bytesSaved());
+    }
+}
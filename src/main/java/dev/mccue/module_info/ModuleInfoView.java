@@ -0,0 +1,77 @@
+package dev.mccue.module_info;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Optional;
+
+/// A read-only view of a `module-info.class` that decodes each part only when
+/// it is asked for.
+///
+/// Creating a view walks the structure of the class file once to find where
+/// each attribute and each section of the `Module` attribute starts, but
+/// decodes no strings. The counts and {@link #requiresModule(String)} are
+/// answered straight from the bytes without allocating, and every list is
+/// decoded on first use and then kept.
+///
+/// The lists match the corresponding components of {@link #toModuleInfo()},
+/// including the mandated `java.base` require that {@link ModuleInfo} adds.
+public interface ModuleInfoView {
+    /// @throws IllegalArgumentException If the bytes are not a well-formed `module-info.class`.
+    static ModuleInfoView of(byte[] bytes) {
+        return new ClassFileModuleInfoView(ByteBuffer.wrap(bytes));
+    }
+
+    /// A view of the bytes from the buffer's position to its limit. The buffer's
+    /// position is not changed, and its contents must not change while the view
+    /// is in use.
+    ///
+    /// @throws IllegalArgumentException If the bytes are not a well-formed `module-info.class`.
+    static ModuleInfoView of(ByteBuffer buffer) {
+        return new ClassFileModuleInfoView(buffer.slice());
+    }
+
+    String name();
+
+    Optional<String> version();
+
+    boolean open();
+
+    boolean synthetic();
+
+    boolean mandated();
+
+    int exportCount();
+
+    int requiresCount();
+
+    int providesCount();
+
+    int usesCount();
+
+    int packageCount();
+
+    /// Whether the module requires `module`, checked without decoding any names.
+    boolean requiresModule(String module);
+
+    List<Export> exports();
+
+    List<Require> requires();
+
+    List<Provide> provides();
+
+    List<Use> uses();
+
+    List<Package> packages();
+
+    List<Hash> hashes();
+
+    Optional<String> mainClass();
+
+    Optional<String> targetPlatform();
+
+    ModuleInfo toModuleInfo();
+
+    /// The same as {@link ModuleInfo#fingerprint()} of {@link #toModuleInfo()},
+    /// computed from the bytes without building any of the records.
+    String fingerprint();
+}
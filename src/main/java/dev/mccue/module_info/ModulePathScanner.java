@@ -0,0 +1,241 @@
+package dev.mccue.module_info;
+
+import org.jspecify.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.zip.ZipFile;
+
+/// Reads the `module-info.class` of every entry on a module path concurrently.
+///
+/// Each entry of the module path may be a jar, a jmod, an exploded module
+/// (a directory with a `module-info.class` at its root) or a directory
+/// containing any of those. Entries are scanned on virtual threads, with
+/// at most {@link #maxOpenFiles()} files open at any one time.
+///
+/// A scanner can be given a {@link ModuleInfoCache} with {@link #withCache(ModuleInfoCache)},
+/// in which case unchanged files are not opened at all.
+public final class ModulePathScanner {
+    private static final int DEFAULT_MAX_OPEN_FILES = 64;
+
+    private final int maxOpenFiles;
+    private final @Nullable ModuleInfoCache cache;
+
+    private ModulePathScanner(int maxOpenFiles, @Nullable ModuleInfoCache cache) {
+        if (maxOpenFiles < 1) {
+            throw new IllegalArgumentException("maxOpenFiles must be positive: " + maxOpenFiles);
+        }
+        this.maxOpenFiles = maxOpenFiles;
+        this.cache = cache;
+    }
+
+    public static ModulePathScanner of() {
+        return new ModulePathScanner(DEFAULT_MAX_OPEN_FILES, null);
+    }
+
+    public static ModulePathScanner of(int maxOpenFiles) {
+        return new ModulePathScanner(maxOpenFiles, null);
+    }
+
+    public ModulePathScanner withCache(ModuleInfoCache cache) {
+        return new ModulePathScanner(maxOpenFiles, Objects.requireNonNull(cache));
+    }
+
+    public int maxOpenFiles() {
+        return maxOpenFiles;
+    }
+
+    public Optional<ModuleInfoCache> cache() {
+        return Optional.ofNullable(cache);
+    }
+
+    /// The outcome of scanning a single file or exploded module.
+    public sealed interface PathResult {
+        Path path();
+
+        /// @param opens The opens of the module's `module-info.class`, which
+        ///              {@link ModuleInfo} has no place for.
+        record Found(Path path, ModuleInfo moduleInfo, List<Export> opens) implements PathResult {
+            public Found {
+                Objects.requireNonNull(path);
+                Objects.requireNonNull(moduleInfo);
+                opens = List.copyOf(opens);
+            }
+        }
+
+        record NotModular(Path path) implements PathResult {
+            public NotModular {
+                Objects.requireNonNull(path);
+            }
+        }
+
+        record Failed(Path path, Exception error) implements PathResult {
+            public Failed {
+                Objects.requireNonNull(path);
+                Objects.requireNonNull(error);
+            }
+        }
+    }
+
+    /// The result of a scan.
+    ///
+    /// When the same module name is found more than once the first one on the
+    /// module path is the one in {@link #modules()}, mirroring how the module
+    /// system itself resolves duplicates. Every path, including shadowed
+    /// modules, is still listed in {@link #report()} in module path order.
+    ///
+    /// {@link #opens()} has the opens of each module in {@link #modules()}, so that
+    /// {@link ModuleInfoFinder#of(Result)} doesn't have to read them again.
+    public record Result(
+            Map<String, ModuleInfo> modules,
+            Map<String, Path> locations,
+            Map<String, List<Export>> opens,
+            List<PathResult> report
+    ) {
+        public Result(
+                Map<String, ModuleInfo> modules,
+                Map<String, Path> locations,
+                Map<String, List<Export>> opens,
+                List<PathResult> report
+        ) {
+            this.modules = Collections.unmodifiableMap(new LinkedHashMap<>(modules));
+            this.locations = Collections.unmodifiableMap(new LinkedHashMap<>(locations));
+            this.opens = Collections.unmodifiableMap(new LinkedHashMap<>(opens));
+            this.report = List.copyOf(report);
+        }
+
+        public Optional<ModuleInfo> module(String name) {
+            return Optional.ofNullable(modules.get(name));
+        }
+
+        public List<PathResult.Failed> failures() {
+            var failures = new ArrayList<PathResult.Failed>();
+            for (var result : report) {
+                if (result instanceof PathResult.Failed failed) {
+                    failures.add(failed);
+                }
+            }
+            return List.copyOf(failures);
+        }
+    }
+
+    public Result scan(List<Path> modulePath) throws InterruptedException {
+        var openFiles = new Semaphore(maxOpenFiles);
+        var report = new ArrayList<PathResult>();
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var futures = new ArrayList<Future<PathResult>>();
+            for (var entry : modulePath) {
+                var expanded = new ArrayList<Path>();
+                try {
+                    expand(entry, expanded);
+                } catch (IOException e) {
+                    futures.add(CompletableFuture.completedFuture(new PathResult.Failed(entry, e)));
+                    continue;
+                }
+
+                for (var path : expanded) {
+                    futures.add(executor.submit(() -> {
+                        openFiles.acquire();
+                        try {
+                            return scanOne(path);
+                        } finally {
+                            openFiles.release();
+                        }
+                    }));
+                }
+            }
+
+            for (var future : futures) {
+                try {
+                    report.add(future.get());
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof InterruptedException interrupted) {
+                        throw interrupted;
+                    }
+                    if (e.getCause() instanceof Error error) {
+                        throw error;
+                    }
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+        }
+
+        var modules = new LinkedHashMap<String, ModuleInfo>();
+        var locations = new LinkedHashMap<String, Path>();
+        var opens = new LinkedHashMap<String, List<Export>>();
+        for (var result : report) {
+            if (result instanceof PathResult.Found found
+                    && !modules.containsKey(found.moduleInfo().name())) {
+                modules.put(found.moduleInfo().name(), found.moduleInfo());
+                locations.put(found.moduleInfo().name(), found.path());
+                opens.put(found.moduleInfo().name(), found.opens());
+            }
+        }
+        return new Result(modules, locations, opens, report);
+    }
+
+    /// Expands a single module path entry into the files and exploded
+    /// modules it refers to, in the order they should be scanned.
+    static void expand(Path entry, List<Path> into) throws IOException {
+        if (!Files.isDirectory(entry) || isExplodedModule(entry)) {
+            into.add(entry);
+            return;
+        }
+
+        try (var children = Files.list(entry)) {
+            children
+                    .filter(child -> isExplodedModule(child) || isModuleFile(child))
+                    .sorted()
+                    .forEach(into::add);
+        }
+    }
+
+    static boolean isExplodedModule(Path path) {
+        return Files.isRegularFile(path.resolve("module-info.class"));
+    }
+
+    static boolean isModuleFile(Path path) {
+        var fileName = path.getFileName().toString();
+        return (fileName.endsWith(".jar") || fileName.endsWith(".jmod"))
+                && Files.isRegularFile(path);
+    }
+
+    private PathResult scanOne(Path path) {
+        try {
+            Optional<ParsedModule> parsed;
+            if (cache != null) {
+                parsed = cache.parse(path);
+            } else if (Files.isDirectory(path)) {
+                parsed = Optional.of(ModuleInfo.parse(
+                        Files.readAllBytes(path.resolve("module-info.class"))
+                ));
+            } else if (Files.exists(path)) {
+                try (var zipFile = new ZipFile(path.toFile())) {
+                    parsed = ModuleInfo.parse(zipFile, NamePool.NONE);
+                }
+            } else {
+                throw new NoSuchFileException(path.toString());
+            }
+
+            return parsed
+                    .<PathResult>map(module -> new PathResult.Found(path, module.moduleInfo(), module.opens()))
+                    .orElseGet(() -> new PathResult.NotModular(path));
+        } catch (IOException | RuntimeException e) {
+            return new PathResult.Failed(path, e);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package dev.mccue.module_info;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/// Finds the modules in a {@link ModuleSummaryIndex} that export a package,
+/// require a module or provide a service.
+///
+/// ```java
+/// var matches = ModuleQuery.of()
+///         .exports("com.foo")
+///         .requires("java.sql")
+///         .find(index, 10);
+/// ```
+///
+/// Every condition is first checked against each jar's summary with a binary
+/// search. Only jars that pass are opened and parsed, which confirms the match
+/// (a qualified export is in the summary, but does not count as exporting the
+/// package) and gives the {@link ModuleInfo} to return. Jars are visited in
+/// index order and the search stops as soon as enough matches are found.
+///
+/// Queries are immutable, and every condition returns a new query.
+public final class ModuleQuery {
+    /// A module that matched, and the file it was read from.
+    public record Match(Path path, ModuleInfo moduleInfo) {
+        public Match {
+            Objects.requireNonNull(path);
+            Objects.requireNonNull(moduleInfo);
+        }
+    }
+
+    private final List<String> exports;
+    private final List<String> requires;
+    private final List<String> provides;
+
+    private ModuleQuery(List<String> exports, List<String> requires, List<String> provides) {
+        this.exports = exports;
+        this.requires = requires;
+        this.provides = provides;
+    }
+
+    /// A query that matches every module.
+    public static ModuleQuery of() {
+        return new ModuleQuery(List.of(), List.of(), List.of());
+    }
+
+    /// Also require that the module exports `package_` to every module.
+    public ModuleQuery exports(String package_) {
+        return new ModuleQuery(append(exports, package_), requires, provides);
+    }
+
+    /// Also require that the module requires `module`.
+    public ModuleQuery requires(String module) {
+        return new ModuleQuery(exports, append(requires, module), provides);
+    }
+
+    /// Also require that the module provides an implementation of `service`.
+    public ModuleQuery provides(String service) {
+        return new ModuleQuery(exports, requires, append(provides, service));
+    }
+
+    /// Whether `moduleInfo` meets every condition.
+    public boolean test(ModuleInfo moduleInfo) {
+        for (var package_ : exports) {
+            boolean found = false;
+            for (var export : moduleInfo.exports()) {
+                if (export.to().isEmpty() && export.package_().name().equals(package_)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        for (var module : requires) {
+            boolean found = false;
+            for (var require : moduleInfo.requires()) {
+                if (require.module().name().equals(module)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        for (var service : provides) {
+            boolean found = false;
+            for (var provide : moduleInfo.provides()) {
+                if (provide.service().equals(service)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /// The first match in index order.
+    public Optional<Match> first(ModuleSummaryIndex index) throws IOException {
+        var matches = find(index, 1);
+        return matches.isEmpty() ? Optional.empty() : Optional.of(matches.getFirst());
+    }
+
+    /// Up to `limit` matches, in index order.
+    public List<Match> find(ModuleSummaryIndex index, int limit) throws IOException {
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit must not be negative: " + limit);
+        }
+        var matches = new ArrayList<Match>(Math.min(limit, 16));
+        for (var summary : index.summaries()) {
+            if (matches.size() >= limit) {
+                break;
+            }
+            if (!mayMatch(summary)) {
+                continue;
+            }
+            var path = summary.path();
+            var moduleInfo = ModuleSummaryIndex.read(path, Files.isDirectory(path));
+            if (moduleInfo.isPresent() && test(moduleInfo.get())) {
+                matches.add(new Match(path, moduleInfo.get()));
+            }
+        }
+        return List.copyOf(matches);
+    }
+
+    /// Every match, in index order.
+    public List<Match> findAll(ModuleSummaryIndex index) throws IOException {
+        return find(index, Integer.MAX_VALUE);
+    }
+
+    /// Whether the module behind `summary` could match, answered without reading it.
+    boolean mayMatch(ModuleSummaryIndex.Summary summary) {
+        if (summary.name() == null) {
+            return false;
+        }
+        for (var package_ : exports) {
+            if (!summary.exports(package_)) {
+                return false;
+            }
+        }
+        for (var module : requires) {
+            if (!summary.requires(module)) {
+                return false;
+            }
+        }
+        for (var service : provides) {
+            if (!summary.provides(service)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static List<String> append(List<String> names, String name) {
+        Objects.requireNonNull(name);
+        var appended = new ArrayList<String>(names.size() + 1);
+        appended.addAll(names);
+        appended.add(name);
+        return List.copyOf(appended);
+    }
+}
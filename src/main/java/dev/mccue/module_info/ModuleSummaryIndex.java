@@ -0,0 +1,281 @@
+package dev.mccue.module_info;
+
+import org.jspecify.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+
+/// A compact summary of the module info of every jar in a list, for
+/// {@link ModuleQuery} to filter on before parsing anything.
+///
+/// For each jar only its module name and the sorted names of the packages it
+/// exports, the modules it requires and the services it provides are kept,
+/// along with its size and last modified time. An index can be saved to a file,
+/// typically next to the jar list, and reopened with {@link #open(Path, List)},
+/// which only reads the jars that changed since.
+///
+/// Jars, jmods and exploded modules are all supported. Files without a module
+/// info are kept in the index but never match a query.
+public final class ModuleSummaryIndex {
+    private static final int MAGIC = 0x4D535831;
+    private static final int FORMAT_VERSION = 1;
+    private static final int MAX_OPEN_FILES = 64;
+    private static final String[] NONE = new String[0];
+
+    /// What is known about one jar. Every name array is sorted.
+    record Summary(
+            Path path,
+            long size,
+            long lastModified,
+            @Nullable String name,
+            String[] exports,
+            String[] requires,
+            String[] provides
+    ) {
+        boolean exports(String package_) {
+            return Arrays.binarySearch(exports, package_) >= 0;
+        }
+
+        boolean requires(String module) {
+            return Arrays.binarySearch(requires, module) >= 0;
+        }
+
+        boolean provides(String service) {
+            return Arrays.binarySearch(provides, service) >= 0;
+        }
+    }
+
+    private final List<Summary> summaries;
+
+    private ModuleSummaryIndex(List<Summary> summaries) {
+        this.summaries = List.copyOf(summaries);
+    }
+
+    /// Summarizes every one of `paths`, reading them in parallel.
+    public static ModuleSummaryIndex of(List<Path> paths) throws IOException, InterruptedException {
+        return new ModuleSummaryIndex(summarize(paths, Map.of()));
+    }
+
+    /// Loads the index saved in `indexFile` and brings it up to date with `paths`.
+    ///
+    /// Summaries whose file still has the same size and last modified time are
+    /// reused, the rest of `paths` are read again, and summaries for paths that
+    /// are no longer listed are dropped. When anything changed, or `indexFile`
+    /// is missing or unreadable, the new index is saved back to it.
+    public static ModuleSummaryIndex open(Path indexFile, List<Path> paths) throws IOException, InterruptedException {
+        var stored = read(indexFile);
+        var summaries = summarize(paths, stored == null ? Map.of() : stored);
+        var index = new ModuleSummaryIndex(summaries);
+
+        boolean changed = stored == null || stored.size() != summaries.size();
+        for (int i = 0; !changed && i < summaries.size(); i++) {
+            changed = stored.get(summaries.get(i).path()) != summaries.get(i);
+        }
+        if (changed) {
+            index.save(indexFile);
+        }
+        return index;
+    }
+
+    /// Writes the index to `indexFile`, replacing it atomically.
+    public void save(Path indexFile) throws IOException {
+        var directory = indexFile.toAbsolutePath().getParent();
+        var temp = Files.createTempFile(directory, indexFile.getFileName().toString(), ".tmp");
+        try {
+            try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(summaries.size());
+                for (var summary : summaries) {
+                    out.writeUTF(summary.path().toString());
+                    out.writeLong(summary.size());
+                    out.writeLong(summary.lastModified());
+                    out.writeBoolean(summary.name() != null);
+                    if (summary.name() != null) {
+                        out.writeUTF(summary.name());
+                    }
+                    writeNames(summary.exports(), out);
+                    writeNames(summary.requires(), out);
+                    writeNames(summary.provides(), out);
+                }
+            }
+            try {
+                Files.move(temp, indexFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /// The number of files in the index.
+    public int size() {
+        return summaries.size();
+    }
+
+    /// Every file in the index, in the order they were given.
+    public List<Path> paths() {
+        return summaries.stream().map(Summary::path).toList();
+    }
+
+    List<Summary> summaries() {
+        return summaries;
+    }
+
+    private static @Nullable Map<Path, Summary> read(Path indexFile) {
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                return null;
+            }
+            int count = in.readInt();
+            var summaries = new HashMap<Path, Summary>(count * 2);
+            for (int i = 0; i < count; i++) {
+                var path = Path.of(in.readUTF());
+                long size = in.readLong();
+                long lastModified = in.readLong();
+                var name = in.readBoolean() ? in.readUTF() : null;
+                summaries.put(path, new Summary(
+                        path,
+                        size,
+                        lastModified,
+                        name,
+                        readNames(in),
+                        readNames(in),
+                        readNames(in)
+                ));
+            }
+            return summaries;
+        } catch (IOException | RuntimeException e) {
+            // Missing or written by an incompatible version, so everything is read again
+            return null;
+        }
+    }
+
+    private static void writeNames(String[] names, DataOutputStream out) throws IOException {
+        out.writeInt(names.length);
+        for (var name : names) {
+            out.writeUTF(name);
+        }
+    }
+
+    private static String[] readNames(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("Invalid count: " + count);
+        }
+        var names = new String[count];
+        for (int i = 0; i < count; i++) {
+            names[i] = in.readUTF();
+        }
+        return names;
+    }
+
+    private static List<Summary> summarize(
+            List<Path> paths,
+            Map<Path, Summary> stored
+    ) throws IOException, InterruptedException {
+        var summaries = new ArrayList<Summary>(paths.size());
+        var openFiles = new Semaphore(MAX_OPEN_FILES);
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var futures = new ArrayList<Future<Summary>>(paths.size());
+            for (var path : paths) {
+                var file = path.toAbsolutePath().normalize();
+                futures.add(executor.submit((Callable<Summary>) () -> {
+                    openFiles.acquire();
+                    try {
+                        return summarize(file, stored.get(file));
+                    } finally {
+                        openFiles.release();
+                    }
+                }));
+            }
+            for (var future : futures) {
+                try {
+                    summaries.add(future.get());
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException io) {
+                        throw io;
+                    }
+                    if (e.getCause() instanceof RuntimeException runtime) {
+                        throw runtime;
+                    }
+                    if (e.getCause() instanceof Error error) {
+                        throw error;
+                    }
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+        }
+        return summaries;
+    }
+
+    private static Summary summarize(Path file, @Nullable Summary stored) throws IOException {
+        boolean exploded = Files.isDirectory(file);
+        var moduleInfoFile = file.resolve("module-info.class");
+        var attributes = Files.readAttributes(
+                exploded && Files.exists(moduleInfoFile) ? moduleInfoFile : file,
+                BasicFileAttributes.class
+        );
+        long size = attributes.size();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        if (stored != null && stored.size() == size && stored.lastModified() == lastModified) {
+            return stored;
+        }
+
+        var moduleInfo = read(file, exploded);
+        if (moduleInfo.isEmpty()) {
+            return new Summary(file, size, lastModified, null, NONE, NONE, NONE);
+        }
+        var module = moduleInfo.get();
+        return new Summary(
+                file,
+                size,
+                lastModified,
+                module.name(),
+                sorted(module.exports().stream().map(export -> export.package_().name())),
+                sorted(module.requires().stream().map(require -> require.module().name())),
+                sorted(module.provides().stream().map(Provide::service))
+        );
+    }
+
+    /// Reads the module info of a jar, jmod or exploded module.
+    static Optional<ModuleInfo> read(Path file, boolean exploded) throws IOException {
+        if (exploded) {
+            try {
+                return Optional.of(ModuleInfo.fromBytes(Files.readAllBytes(file.resolve("module-info.class"))));
+            } catch (NoSuchFileException e) {
+                return Optional.empty();
+            }
+        }
+        try (var channel = FileChannel.open(file)) {
+            return ModuleInfo.from(channel);
+        }
+    }
+
+    private static String[] sorted(Stream<String> names) {
+        return names.distinct().sorted().toArray(String[]::new);
+    }
+}
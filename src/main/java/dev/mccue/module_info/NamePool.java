@@ -0,0 +1,141 @@
+package dev.mccue.module_info;
+
+import org.jspecify.annotations.Nullable;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/// Canonicalizes the names and small records that make up a {@link ModuleInfo}.
+///
+/// {@link #NONE} hands back what it is given, or a fresh record, and is what
+/// the static parse methods on {@link ModuleInfo} use.
+final class NamePool {
+    static final NamePool NONE = new NamePool(false);
+
+    // Rough sizes of the objects a hit avoids keeping alive, assuming compressed
+    // oops and compact strings
+    private static final int OBJECT_HEADER = 12;
+    private static final int REFERENCE = 4;
+    private static final int SMALL_RECORD = align(OBJECT_HEADER + REFERENCE);
+
+    private final boolean interning;
+    private final ConcurrentHashMap<String, String> strings = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Object, Object> records = new ConcurrentHashMap<>();
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder bytesSaved = new LongAdder();
+
+    NamePool() {
+        this(true);
+    }
+
+    private NamePool(boolean interning) {
+        this.interning = interning;
+    }
+
+    String string(String value) {
+        if (!interning) {
+            return value;
+        }
+        lookups.increment();
+        var existing = strings.putIfAbsent(value, value);
+        if (existing != null) {
+            hits.increment();
+            bytesSaved.add(stringSize(value));
+            return existing;
+        }
+        return value;
+    }
+
+    Module module(String name) {
+        if (!interning) {
+            return new Module(name);
+        }
+        var existing = lookup(new Module(name), stringSize(name));
+        return existing != null ? existing : insert(new Module(string(name)));
+    }
+
+    Package package_(String name) {
+        if (!interning) {
+            return new Package(name);
+        }
+        var existing = lookup(new Package(name), stringSize(name));
+        return existing != null ? existing : insert(new Package(string(name)));
+    }
+
+    ExportTo exportTo(String module) {
+        if (!interning) {
+            return new ExportTo(new Module(module));
+        }
+        var existing = lookup(new ExportTo(new Module(module)), SMALL_RECORD + stringSize(module));
+        return existing != null ? existing : insert(new ExportTo(module(module)));
+    }
+
+    /// Expects a require whose module and version were already canonicalized.
+    Require require(Require require) {
+        if (!interning) {
+            return require;
+        }
+        var existing = lookup(require, 0);
+        return existing != null ? existing : insert(require);
+    }
+
+    Use use(String service) {
+        if (!interning) {
+            return new Use(service);
+        }
+        var existing = lookup(new Use(service), stringSize(service));
+        return existing != null ? existing : insert(new Use(string(service)));
+    }
+
+    /// Finds the canonical equivalent of `candidate`. On a hit, the candidate and
+    /// `retainedBytes` worth of objects it refers to are counted as saved.
+    private <T extends Record> @Nullable T lookup(T candidate, long retainedBytes) {
+        lookups.increment();
+        @SuppressWarnings("unchecked")
+        var existing = (T) records.get(candidate);
+        if (existing != null) {
+            hits.increment();
+            bytesSaved.add(recordSize(candidate) + retainedBytes);
+        }
+        return existing;
+    }
+
+    private <T extends Record> T insert(T value) {
+        @SuppressWarnings("unchecked")
+        var existing = (T) records.putIfAbsent(value, value);
+        return existing != null ? existing : value;
+    }
+
+    long lookups() {
+        return lookups.sum();
+    }
+
+    long hits() {
+        return hits.sum();
+    }
+
+    long distinct() {
+        return strings.size() + records.size();
+    }
+
+    long bytesSaved() {
+        return bytesSaved.sum();
+    }
+
+    private static long stringSize(String value) {
+        // String object plus its backing byte[]
+        return align(OBJECT_HEADER + REFERENCE + 4 + 1 + 1) + align(OBJECT_HEADER + 4 + value.length());
+    }
+
+    private static long recordSize(Record record) {
+        // Only the records handed to lookup are sized; all but Require hold a single reference
+        return record instanceof Require
+                ? align(OBJECT_HEADER + 2 * REFERENCE + 4)
+                : SMALL_RECORD;
+    }
+
+    private static int align(int size) {
+        return (size + 7) & ~7;
+    }
+}
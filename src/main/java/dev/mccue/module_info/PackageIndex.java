@@ -0,0 +1,239 @@
+package dev.mccue.module_info;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/// Maps every package in a set of modules to the modules that contain it.
+///
+/// A module contains the packages in its {@link ModuleInfo#packages()} along
+/// with every package it {@link ModuleInfo#exports()}. Packages are kept in an
+/// open-addressing table with the owners of each package chained through two
+/// parallel `int` arrays, so the index holds no per-package objects beyond the
+/// package names themselves, which are shared with the given modules.
+///
+/// Split packages and qualified exports to modules that are not in the index
+/// are found while the index is built.
+public final class PackageIndex {
+    private static final int NO_LINK = -1;
+
+    /// A package contained in more than one module.
+    public record SplitPackage(Package package_, List<Module> modules) {
+        public SplitPackage(Package package_, List<Module> modules) {
+            this.package_ = Objects.requireNonNull(package_);
+            this.modules = List.copyOf(modules);
+        }
+    }
+
+    /// A qualified export from `module` to a `target` that is not in the index.
+    public record MissingExportTarget(Module module, Package package_, Module target) {
+        public MissingExportTarget {
+            Objects.requireNonNull(module);
+            Objects.requireNonNull(package_);
+            Objects.requireNonNull(target);
+        }
+    }
+
+    private final Module[] modules;
+
+    // Open-addressing table of package names
+    private String[] keys;
+    private int[] hashes;
+    private int[] heads;
+    private int[] ownerCounts;
+    private int size;
+
+    // Owner chains, newest first
+    private int[] linkModule = new int[16];
+    private int[] linkNext = new int[16];
+    private int linkCount;
+
+    private final List<Integer> splitSlots = new ArrayList<>();
+    private final List<MissingExportTarget> missingExportTargets = new ArrayList<>();
+
+    private PackageIndex(Collection<ModuleInfo> moduleInfos) {
+        this.modules = new Module[moduleInfos.size()];
+        var names = new HashSet<String>(moduleInfos.size() * 2);
+        int estimatedPackages = 0;
+        int i = 0;
+        for (var moduleInfo : moduleInfos) {
+            modules[i++] = new Module(moduleInfo.name());
+            names.add(moduleInfo.name());
+            estimatedPackages += moduleInfo.packages().size() + moduleInfo.exports().size();
+        }
+
+        int capacity = Integer.highestOneBit(Math.max(16, estimatedPackages * 2 - 1)) << 1;
+        this.keys = new String[capacity];
+        this.hashes = new int[capacity];
+        this.heads = new int[capacity];
+        this.ownerCounts = new int[capacity];
+
+        int moduleId = 0;
+        for (var moduleInfo : moduleInfos) {
+            for (var package_ : moduleInfo.packages()) {
+                addOwner(package_.name(), moduleId);
+            }
+            for (var export : moduleInfo.exports()) {
+                addOwner(export.package_().name(), moduleId);
+                for (var to : export.to()) {
+                    if (!names.contains(to.module().name())) {
+                        missingExportTargets.add(new MissingExportTarget(
+                                modules[moduleId],
+                                export.package_(),
+                                to.module()
+                        ));
+                    }
+                }
+            }
+            moduleId++;
+        }
+    }
+
+    public static PackageIndex of(Collection<ModuleInfo> modules) {
+        return new PackageIndex(modules);
+    }
+
+    /// The number of distinct packages.
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(String package_) {
+        return slot(package_) >= 0;
+    }
+
+    /// The first module, in the order the index was built from, that contains `package_`.
+    public Optional<Module> owner(String package_) {
+        int slot = slot(package_);
+        if (slot < 0) {
+            return Optional.empty();
+        }
+        int link = heads[slot];
+        while (linkNext[link] != NO_LINK) {
+            link = linkNext[link];
+        }
+        return Optional.of(modules[linkModule[link]]);
+    }
+
+    /// Every module that contains `package_`, in the order the index was built from.
+    public List<Module> owners(String package_) {
+        int slot = slot(package_);
+        return slot < 0 ? List.of() : ownersAt(slot);
+    }
+
+    public List<SplitPackage> splitPackages() {
+        var splitPackages = new ArrayList<SplitPackage>(splitSlots.size());
+        for (int slot : splitSlots) {
+            splitPackages.add(new SplitPackage(new Package(keys[slot]), ownersAt(slot)));
+        }
+        return List.copyOf(splitPackages);
+    }
+
+    public List<MissingExportTarget> missingExportTargets() {
+        return List.copyOf(missingExportTargets);
+    }
+
+    private List<Module> ownersAt(int slot) {
+        var owners = new Module[ownerCounts[slot]];
+        int i = owners.length;
+        for (int link = heads[slot]; link != NO_LINK; link = linkNext[link]) {
+            owners[--i] = modules[linkModule[link]];
+        }
+        return List.of(owners);
+    }
+
+    private int slot(String package_) {
+        int hash = spread(package_.hashCode());
+        int mask = keys.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            var key = keys[slot];
+            if (key == null) {
+                return -1;
+            }
+            if (key == package_ || (hashes[slot] == hash && key.equals(package_))) {
+                return slot;
+            }
+        }
+    }
+
+    private void addOwner(String package_, int moduleId) {
+        if ((size + 1) * 2 > keys.length) {
+            resize();
+        }
+
+        int hash = spread(package_.hashCode());
+        int mask = keys.length - 1;
+        int slot = hash & mask;
+        while (true) {
+            var key = keys[slot];
+            if (key == null) {
+                keys[slot] = package_;
+                hashes[slot] = hash;
+                heads[slot] = NO_LINK;
+                size++;
+                break;
+            }
+            if (key == package_ || (hashes[slot] == hash && key.equals(package_))) {
+                break;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        // Modules are added one at a time, so a package listed twice by the
+        // same module is always at the head of the chain
+        int head = heads[slot];
+        if (head != NO_LINK && linkModule[head] == moduleId) {
+            return;
+        }
+
+        if (linkCount == linkModule.length) {
+            linkModule = Arrays.copyOf(linkModule, linkCount * 2);
+            linkNext = Arrays.copyOf(linkNext, linkCount * 2);
+        }
+        linkModule[linkCount] = moduleId;
+        linkNext[linkCount] = head;
+        heads[slot] = linkCount++;
+
+        if (++ownerCounts[slot] == 2) {
+            splitSlots.add(slot);
+        }
+    }
+
+    private void resize() {
+        var oldKeys = keys;
+        var oldHashes = hashes;
+        var oldHeads = heads;
+        var oldOwnerCounts = ownerCounts;
+        int capacity = oldKeys.length * 2;
+        keys = new String[capacity];
+        hashes = new int[capacity];
+        heads = new int[capacity];
+        ownerCounts = new int[capacity];
+
+        var slotMapping = new int[oldKeys.length];
+        int mask = capacity - 1;
+        for (int old = 0; old < oldKeys.length; old++) {
+            if (oldKeys[old] == null) {
+                continue;
+            }
+            int slot = oldHashes[old] & mask;
+            while (keys[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = oldKeys[old];
+            hashes[slot] = oldHashes[old];
+            heads[slot] = oldHeads[old];
+            ownerCounts[slot] = oldOwnerCounts[old];
+            slotMapping[old] = slot;
+        }
+        splitSlots.replaceAll(old -> slotMapping[old]);
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
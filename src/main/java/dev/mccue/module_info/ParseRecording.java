@@ -0,0 +1,53 @@
+package dev.mccue.module_info;
+
+import org.jspecify.annotations.Nullable;
+
+/// One parse of a `module-info.class`, recorded as a {@link ModuleInfoParseEvent}
+/// and in {@link ModuleInfoMetrics}.
+///
+/// When neither JFR nor the metrics are listening a shared instance is handed
+/// out and nothing is timed. The event class is only touched when the `jdk.jfr`
+/// module is present.
+final class ParseRecording {
+    private static final ParseRecording DISABLED = new ParseRecording(null, ModuleInfoMetrics.NOT_TIMED);
+
+    private final @Nullable ModuleInfoParseEvent event;
+    private final long start;
+
+    private ParseRecording(@Nullable ModuleInfoParseEvent event, long start) {
+        this.event = event;
+        this.start = start;
+    }
+
+    static ParseRecording begin() {
+        long start = ModuleInfoMetrics.start();
+        ModuleInfoParseEvent event = null;
+        if (ModuleInfoMetrics.JFR_AVAILABLE) {
+            event = new ModuleInfoParseEvent();
+            if (event.isEnabled()) {
+                event.begin();
+            } else {
+                event = null;
+            }
+        }
+        return event == null && start == ModuleInfoMetrics.NOT_TIMED
+                ? DISABLED
+                : new ParseRecording(event, start);
+    }
+
+    void end(String module, int bytes) {
+        if (this == DISABLED) {
+            return;
+        }
+        var event = this.event;
+        if (event != null) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.module = module;
+                event.bytes = bytes;
+                event.commit();
+            }
+        }
+        ModuleInfoMetrics.recordParse(start, bytes);
+    }
+}
@@ -0,0 +1,16 @@
+package dev.mccue.module_info;
+
+import java.util.List;
+import java.util.Objects;
+
+/// A module info together with the `opens` of the `module-info.class` it was
+/// parsed from, which {@link ModuleInfo} does not keep.
+///
+/// They are taken while the class file is at hand, so that {@link ModuleInfoFinder}
+/// can give descriptors with their opens without reading the module again.
+record ParsedModule(ModuleInfo moduleInfo, List<Export> opens) {
+    ParsedModule(ModuleInfo moduleInfo, List<Export> opens) {
+        this.moduleInfo = Objects.requireNonNull(moduleInfo);
+        this.opens = List.copyOf(opens);
+    }
+}
@@ -0,0 +1,84 @@
+package dev.mccue.module_info;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/// A bounded pool of heap buffers that entries are read into before they are parsed.
+///
+/// Buffers grow to fit whatever is read into them and go back to the pool when
+/// released, unless the pool is full or the buffer grew past
+/// {@link #MAX_POOLED_CAPACITY}. The pool is shared rather than kept per thread,
+/// since with virtual threads a thread local would be a new buffer per task.
+final class ReadBufferPool {
+    private static final int INITIAL_CAPACITY = 8 * 1024;
+    private static final int MAX_POOLED_CAPACITY = 1 << 20;
+    private static final int MAX_POOLED = 2 * Runtime.getRuntime().availableProcessors();
+
+    /// The most that is allocated up front for an entry, whatever size it claims.
+    /// Sizes come from zip headers, which can say anything, so a larger entry
+    /// has to prove its size by growing the buffer as it is read.
+    static final int MAX_SIZE_HINT = MAX_POOLED_CAPACITY;
+
+    static final ReadBufferPool SHARED = new ReadBufferPool();
+
+    private final ConcurrentLinkedQueue<byte[]> buffers = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooled = new AtomicInteger();
+
+    private ReadBufferPool() {}
+
+    /// A buffer for an entry of about `sizeHint` bytes, to be handed back with
+    /// {@link #release(byte[])}. The hint is capped at {@link #MAX_SIZE_HINT},
+    /// and one that is negative, for an unknown size, is ignored.
+    byte[] acquire(long sizeHint) {
+        int capacity = Math.clamp(sizeHint, 0, MAX_SIZE_HINT);
+        var buffer = buffers.poll();
+        if (buffer == null) {
+            return new byte[Math.max(capacity, INITIAL_CAPACITY)];
+        }
+        pooled.decrementAndGet();
+        return buffer.length >= capacity ? buffer : new byte[capacity];
+    }
+
+    void release(byte[] buffer) {
+        if (buffer.length > MAX_POOLED_CAPACITY) {
+            return;
+        }
+        if (pooled.incrementAndGet() > MAX_POOLED) {
+            pooled.decrementAndGet();
+            return;
+        }
+        buffers.offer(buffer);
+    }
+
+    /// Reads the rest of `inputStream` into `buffer`, growing it when it is too
+    /// small, and returns the buffer that holds the data along with its length.
+    /// A buffer that had to grow replaces `buffer`, which can then be dropped.
+    static Read readAll(InputStream inputStream, byte[] buffer) throws IOException {
+        int length = 0;
+        while (true) {
+            if (length == buffer.length) {
+                // Only grow when there is more to come, so an exactly sized buffer is kept
+                int next = inputStream.read();
+                if (next < 0) {
+                    return new Read(buffer, length);
+                }
+                if (buffer.length >= Integer.MAX_VALUE - 8) {
+                    throw new IOException("Entry too large to read into memory");
+                }
+                buffer = Arrays.copyOf(buffer, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(16, buffer.length * 2L)));
+                buffer[length++] = (byte) next;
+            }
+            int read = inputStream.read(buffer, length, buffer.length - length);
+            if (read < 0) {
+                return new Read(buffer, length);
+            }
+            length += read;
+        }
+    }
+
+    record Read(byte[] buffer, int length) {
+    }
+}
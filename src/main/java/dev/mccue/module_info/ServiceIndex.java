@@ -0,0 +1,226 @@
+package dev.mccue.module_info;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/// Which modules use and provide which services, across a set of modules.
+///
+/// Service and module names are each given a dense id when the index is built,
+/// and the uses, provides and non-static requires of every module are stored
+/// as arrays of those ids. That makes the service binding done by
+/// {@link java.lang.module.Configuration#resolveAndBind} cheap to replay with
+/// {@link #resolveAndBind(Collection)}, without reading any jars or creating a
+/// {@link java.lang.ModuleLayer}.
+///
+/// When more than one of the given modules has the same name, the first one is used.
+public final class ServiceIndex {
+    private static final int[] NONE = new int[0];
+
+    private final ModuleInfo[] modules;
+    private final Map<String, Integer> moduleIds;
+    private final String[] services;
+    private final Map<String, Integer> serviceIds;
+    private final int[][] requires;
+    private final int[][] uses;
+    private final int[][] providers;
+    private final int[][] consumers;
+
+    private ServiceIndex(Collection<ModuleInfo> moduleInfos) {
+        var modules = new ArrayList<ModuleInfo>(moduleInfos.size());
+        this.moduleIds = new HashMap<>(moduleInfos.size() * 2);
+        for (var moduleInfo : moduleInfos) {
+            if (moduleIds.putIfAbsent(moduleInfo.name(), modules.size()) == null) {
+                modules.add(moduleInfo);
+            }
+        }
+        this.modules = modules.toArray(ModuleInfo[]::new);
+
+        var services = new ArrayList<String>();
+        this.serviceIds = new HashMap<>();
+        var providersByService = new ArrayList<IntList>();
+        var consumersByService = new ArrayList<IntList>();
+        this.requires = new int[this.modules.length][];
+        this.uses = new int[this.modules.length][];
+        for (int m = 0; m < this.modules.length; m++) {
+            var module = this.modules[m];
+
+            var required = new IntList();
+            for (var require : module.requires()) {
+                var id = moduleIds.get(require.module().name());
+                if (id != null && !require.static_()) {
+                    required.add(id);
+                }
+            }
+            requires[m] = required.toArray();
+
+            var used = new IntList();
+            for (var use : module.uses()) {
+                int service = serviceId(use.service(), services, providersByService, consumersByService);
+                used.add(service);
+                consumersByService.get(service).add(m);
+            }
+            uses[m] = used.toArray();
+
+            for (var provide : module.provides()) {
+                int service = serviceId(provide.service(), services, providersByService, consumersByService);
+                providersByService.get(service).add(m);
+            }
+        }
+
+        this.services = services.toArray(String[]::new);
+        this.providers = new int[this.services.length][];
+        this.consumers = new int[this.services.length][];
+        for (int s = 0; s < this.services.length; s++) {
+            providers[s] = providersByService.get(s).toArray();
+            consumers[s] = consumersByService.get(s).toArray();
+        }
+    }
+
+    public static ServiceIndex of(Collection<ModuleInfo> modules) {
+        return new ServiceIndex(modules);
+    }
+
+    /// Every service that is used or provided by at least one module.
+    public Set<String> services() {
+        return Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(services)));
+    }
+
+    /// The modules that provide `service`, in the order the index was built from.
+    public List<Module> providers(String service) {
+        var id = serviceIds.get(service);
+        return id == null ? List.of() : modules(providers[id]);
+    }
+
+    /// The modules that use `service`, in the order the index was built from.
+    public List<Module> consumers(String service) {
+        var id = serviceIds.get(service);
+        return id == null ? List.of() : modules(consumers[id]);
+    }
+
+    /// Services that at least one module uses but that no module provides.
+    public Set<String> unprovidedServices() {
+        var unprovided = new LinkedHashSet<String>();
+        for (int s = 0; s < services.length; s++) {
+            if (consumers[s].length > 0 && providers[s].length == 0) {
+                unprovided.add(services[s]);
+            }
+        }
+        return Collections.unmodifiableSet(unprovided);
+    }
+
+    /// The modules resolved from `roots` by following requires alone,
+    /// as {@link java.lang.module.Configuration#resolve} would.
+    ///
+    /// `requires static` is not followed, and roots or requires that are not
+    /// in the index are skipped rather than reported.
+    public Set<String> resolve(Collection<String> roots) {
+        return names(closure(roots, false));
+    }
+
+    /// The modules resolved from `roots` by following requires and, for every
+    /// service used by a resolved module, adding the modules that provide it,
+    /// as {@link java.lang.module.Configuration#resolveAndBind} would.
+    public Set<String> resolveAndBind(Collection<String> roots) {
+        return names(closure(roots, true));
+    }
+
+    /// The modules that {@link #resolveAndBind(Collection)} adds on top of
+    /// {@link #resolve(Collection)}, which is to say the modules that are only
+    /// there because of service binding.
+    public Set<String> bindingOnlyModules(Collection<String> roots) {
+        var bound = closure(roots, true);
+        bound.andNot(closure(roots, false));
+        return names(bound);
+    }
+
+    private BitSet closure(Collection<String> roots, boolean bind) {
+        var seen = new BitSet(modules.length);
+        var queue = new ArrayDeque<Integer>();
+        for (var root : roots) {
+            var id = moduleIds.get(root);
+            if (id != null && !seen.get(id)) {
+                seen.set(id);
+                queue.add(id);
+            }
+        }
+
+        while (!queue.isEmpty()) {
+            int module = queue.poll();
+            for (int required : requires[module]) {
+                if (!seen.get(required)) {
+                    seen.set(required);
+                    queue.add(required);
+                }
+            }
+            if (bind) {
+                for (int service : uses[module]) {
+                    for (int provider : providers[service]) {
+                        if (!seen.get(provider)) {
+                            seen.set(provider);
+                            queue.add(provider);
+                        }
+                    }
+                }
+            }
+        }
+        return seen;
+    }
+
+    private Set<String> names(BitSet ids) {
+        var names = new LinkedHashSet<String>();
+        for (int i = ids.nextSetBit(0); i >= 0; i = ids.nextSetBit(i + 1)) {
+            names.add(modules[i].name());
+        }
+        return Collections.unmodifiableSet(names);
+    }
+
+    private List<Module> modules(int[] ids) {
+        var modules = new Module[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            modules[i] = new Module(this.modules[ids[i]].name());
+        }
+        return List.of(modules);
+    }
+
+    private int serviceId(
+            String service,
+            List<String> services,
+            List<IntList> providersByService,
+            List<IntList> consumersByService
+    ) {
+        var id = serviceIds.get(service);
+        if (id == null) {
+            id = services.size();
+            serviceIds.put(service, id);
+            services.add(service);
+            providersByService.add(new IntList());
+            consumersByService.add(new IntList());
+        }
+        return id;
+    }
+
+    private static final class IntList {
+        private int[] values = NONE;
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, Math.max(4, size * 2));
+            }
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            return size == 0 ? NONE : Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package dev.mccue.module_info;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/// Loads the module infos of every system module of a JDK, for
+/// {@link ModuleInfo#systemModules(Path)}.
+///
+/// A JDK's `jmods/` directory is read when it has one, going straight to each
+/// jmod's central directory. Otherwise, as with JDKs built without jmods, the
+/// `jrt:/` file system of its runtime image is used. Either way every module is
+/// read on its own virtual thread.
+///
+/// Results are kept for the life of the JVM, keyed by the real path of the JDK and
+/// the `JAVA_VERSION` in its `release` file, so an upgrade in place is noticed.
+final class SystemModules {
+    private record Key(Path javaHome, String release) {
+    }
+
+    private static final Map<Key, Map<String, ModuleInfo>> CACHE = new ConcurrentHashMap<>();
+
+    private SystemModules() {}
+
+    static Map<String, ModuleInfo> load(Path javaHome) throws IOException, InterruptedException {
+        var realHome = javaHome.toRealPath();
+        var key = new Key(realHome, release(realHome));
+        var modules = CACHE.get(key);
+        if (modules == null) {
+            modules = read(realHome);
+            var existing = CACHE.putIfAbsent(key, modules);
+            if (existing != null) {
+                modules = existing;
+            }
+        }
+        return modules;
+    }
+
+    private static String release(Path javaHome) throws IOException {
+        var release = javaHome.resolve("release");
+        if (!Files.isRegularFile(release)) {
+            throw new NoSuchFileException(release.toString(), null, "Not a JDK: no release file");
+        }
+        for (var line : Files.readAllLines(release)) {
+            if (line.startsWith("JAVA_VERSION=")) {
+                return line.substring("JAVA_VERSION=".length()).replace("\"", "");
+            }
+        }
+        return "";
+    }
+
+    private static Map<String, ModuleInfo> read(Path javaHome) throws IOException, InterruptedException {
+        var jmods = javaHome.resolve("jmods");
+        if (Files.isDirectory(jmods)) {
+            List<Path> files;
+            try (var children = Files.list(jmods)) {
+                files = children
+                        .filter(path -> path.getFileName().toString().endsWith(".jmod"))
+                        .sorted()
+                        .toList();
+            }
+            if (!files.isEmpty()) {
+                return readAll(files, SystemModules::readJmod);
+            }
+        }
+
+        if (isCurrentRuntime(javaHome)) {
+            // The file system of the running JDK is shared and can't be closed
+            return readImage(FileSystems.getFileSystem(URI.create("jrt:/")));
+        }
+        try (var jrt = FileSystems.newFileSystem(URI.create("jrt:/"), Map.of("java.home", javaHome.toString()))) {
+            return readImage(jrt);
+        }
+    }
+
+    private static Map<String, ModuleInfo> readImage(FileSystem jrt) throws IOException, InterruptedException {
+        List<Path> files;
+        try (var modules = Files.list(jrt.getPath("/modules"))) {
+            files = modules
+                    .map(module -> module.resolve("module-info.class"))
+                    .filter(Files::isRegularFile)
+                    .toList();
+        }
+        return readAll(files, file -> Optional.of(ModuleInfo.fromBytes(Files.readAllBytes(file))));
+    }
+
+    private static Optional<ModuleInfo> readJmod(Path jmod) throws IOException {
+        try (var channel = FileChannel.open(jmod)) {
+            return ModuleInfo.from(channel);
+        }
+    }
+
+    private interface Reader {
+        Optional<ModuleInfo> read(Path path) throws IOException;
+    }
+
+    private static Map<String, ModuleInfo> readAll(
+            List<Path> files,
+            Reader reader
+    ) throws IOException, InterruptedException {
+        var modules = new TreeMap<String, ModuleInfo>();
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var futures = new ArrayList<Future<Optional<ModuleInfo>>>(files.size());
+            for (var file : files) {
+                futures.add(executor.submit((Callable<Optional<ModuleInfo>>) () -> reader.read(file)));
+            }
+            for (var future : futures) {
+                try {
+                    future.get().ifPresent(moduleInfo -> modules.put(moduleInfo.name(), moduleInfo));
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException io) {
+                        throw io;
+                    }
+                    if (e.getCause() instanceof RuntimeException runtime) {
+                        throw runtime;
+                    }
+                    if (e.getCause() instanceof Error error) {
+                        throw error;
+                    }
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+        }
+        return Collections.unmodifiableMap(modules);
+    }
+
+    private static boolean isCurrentRuntime(Path javaHome) {
+        try {
+            return Path.of(System.getProperty("java.home")).toRealPath().equals(javaHome);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,466 @@
+package dev.mccue.module_info;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.ZipFile;
+
+/// A live index of the modules on a module path, kept up to date with a {@link WatchService}.
+///
+/// The module path is scanned once with {@link ModulePathScanner}. After that the
+/// directories involved are watched, and only the jars, jmods and exploded modules
+/// that an event refers to are read again, so the cost of an update does not grow
+/// with the size of the module path. Events that arrive within {@link #debounce()}
+/// of each other are handled as one batch, which keeps a build that writes many
+/// files from causing many updates. A batch is cut off after ten times the debounce,
+/// so that a steady trickle of events can't hold back updates forever.
+///
+/// Each batch that changes anything publishes a new immutable {@link Snapshot} and
+/// calls the listeners with the {@link Change}s it made. Listeners are called on
+/// the watching thread, one batch at a time.
+///
+/// Resolution follows {@link ModulePathScanner}: when a module name appears more than
+/// once, the first one on the module path is the one in the snapshot.
+public final class WatchingModuleIndex implements AutoCloseable {
+    private static final Duration DEFAULT_DEBOUNCE = Duration.ofMillis(200);
+    private static final int MAX_BATCH_DEBOUNCES = 10;
+    private static final String MODULE_INFO = "module-info.class";
+
+    /// The index at a point in time.
+    ///
+    /// @param generation Increases by one for each published snapshot, starting at zero.
+    /// @param modules Every module on the module path, by name, in module path order.
+    /// @param locations Where each module in {@link #modules()} was read from.
+    /// @param opens The opens of each module in {@link #modules()}, which {@link ModuleInfo}
+    ///              has no place for, as read from its `module-info.class`.
+    /// @param failures Files that could not be read the last time they were looked at.
+    public record Snapshot(
+            long generation,
+            Map<String, ModuleInfo> modules,
+            Map<String, Path> locations,
+            Map<String, List<Export>> opens,
+            Map<Path, Exception> failures
+    ) {
+        public Snapshot(
+                long generation,
+                Map<String, ModuleInfo> modules,
+                Map<String, Path> locations,
+                Map<String, List<Export>> opens,
+                Map<Path, Exception> failures
+        ) {
+            this.generation = generation;
+            this.modules = Collections.unmodifiableMap(new LinkedHashMap<>(modules));
+            this.locations = Collections.unmodifiableMap(new LinkedHashMap<>(locations));
+            this.opens = Collections.unmodifiableMap(new LinkedHashMap<>(opens));
+            this.failures = Collections.unmodifiableMap(new LinkedHashMap<>(failures));
+        }
+
+        public Optional<ModuleInfo> module(String name) {
+            return Optional.ofNullable(modules.get(name));
+        }
+    }
+
+    /// A change to a single module between two snapshots.
+    public sealed interface Change {
+        String module();
+
+        record Added(String module, ModuleInfo moduleInfo, Path location) implements Change {
+            public Added {
+                Objects.requireNonNull(module);
+                Objects.requireNonNull(moduleInfo);
+                Objects.requireNonNull(location);
+            }
+        }
+
+        record Removed(String module, ModuleInfo previous, Path location) implements Change {
+            public Removed {
+                Objects.requireNonNull(module);
+                Objects.requireNonNull(previous);
+                Objects.requireNonNull(location);
+            }
+        }
+
+        /// The module was read again, and either its contents or where it is
+        /// resolved from changed.
+        record Updated(String module, ModuleInfo previous, ModuleInfo current, Path location) implements Change {
+            public Updated {
+                Objects.requireNonNull(module);
+                Objects.requireNonNull(previous);
+                Objects.requireNonNull(current);
+                Objects.requireNonNull(location);
+            }
+        }
+    }
+
+    /// The changes made by one batch of events and the snapshot they produced.
+    public record ChangeEvent(Snapshot snapshot, List<Change> changes) {
+        public ChangeEvent(Snapshot snapshot, List<Change> changes) {
+            this.snapshot = Objects.requireNonNull(snapshot);
+            this.changes = List.copyOf(changes);
+        }
+    }
+
+    private final List<Path> modulePath;
+    private final Duration debounce;
+    private final WatchService watchService;
+    private final List<Consumer<? super ChangeEvent>> listeners = new CopyOnWriteArrayList<>();
+    private final Thread thread;
+
+    // Only touched by the constructor and then the watching thread
+    private final Map<WatchKey, Path> watchedDirectories = new HashMap<>();
+    private final Map<Path, WatchKey> watchKeys = new HashMap<>();
+    private final Map<Path, NavigableSet<Path>> moduleDirectories = new HashMap<>();
+    private final Set<Path> directEntries = new LinkedHashSet<>();
+    private final Map<Path, ParsedModule> parsed = new HashMap<>();
+    private final Map<Path, Exception> failures = new LinkedHashMap<>();
+
+    private volatile Snapshot snapshot;
+
+    private WatchingModuleIndex(List<Path> modulePath, Duration debounce) throws IOException, InterruptedException {
+        this.modulePath = modulePath.stream()
+                .map(path -> path.toAbsolutePath().normalize())
+                .toList();
+        this.debounce = Objects.requireNonNull(debounce);
+        if (debounce.isNegative()) {
+            throw new IllegalArgumentException("debounce must not be negative: " + debounce);
+        }
+        this.watchService = modulePath.isEmpty()
+                ? FileSystems.getDefault().newWatchService()
+                : this.modulePath.getFirst().getFileSystem().newWatchService();
+
+        try {
+            for (var entry : this.modulePath) {
+                if (Files.isDirectory(entry) && !ModulePathScanner.isExplodedModule(entry)) {
+                    moduleDirectories.put(entry, new TreeSet<>());
+                    watch(entry);
+                } else {
+                    directEntries.add(entry);
+                    var parent = entry.getParent();
+                    if (parent != null && Files.isDirectory(parent)) {
+                        watch(parent);
+                    }
+                }
+            }
+
+            var scan = ModulePathScanner.of().scan(this.modulePath);
+            for (var result : scan.report()) {
+                var path = result.path().toAbsolutePath().normalize();
+                var parent = path.getParent();
+                if (parent != null && moduleDirectories.containsKey(parent)) {
+                    moduleDirectories.get(parent).add(path);
+                }
+                if (Files.isDirectory(path)) {
+                    watch(path);
+                }
+                switch (result) {
+                    case ModulePathScanner.PathResult.Found found ->
+                            parsed.put(path, new ParsedModule(found.moduleInfo(), found.opens()));
+                    case ModulePathScanner.PathResult.Failed failed -> failures.put(path, failed.error());
+                    case ModulePathScanner.PathResult.NotModular ignored -> {
+                    }
+                }
+            }
+            // Directories inside a module directory may become exploded modules later
+            for (var directory : moduleDirectories.keySet()) {
+                try (var children = Files.list(directory)) {
+                    for (var child : children.filter(Files::isDirectory).toList()) {
+                        watch(child);
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException | InterruptedException e) {
+            watchService.close();
+            throw e;
+        }
+
+        this.snapshot = buildSnapshot(0);
+        this.thread = Thread.ofPlatform()
+                .name("module-index-watcher")
+                .daemon()
+                .unstarted(this::run);
+    }
+
+    /// Scans `modulePath` and starts watching it for changes.
+    public static WatchingModuleIndex start(List<Path> modulePath) throws IOException, InterruptedException {
+        return start(modulePath, DEFAULT_DEBOUNCE);
+    }
+
+    public static WatchingModuleIndex start(
+            List<Path> modulePath,
+            Duration debounce
+    ) throws IOException, InterruptedException {
+        var index = new WatchingModuleIndex(List.copyOf(modulePath), debounce);
+        index.thread.start();
+        return index;
+    }
+
+    public Duration debounce() {
+        return debounce;
+    }
+
+    /// The most recently published snapshot.
+    public Snapshot snapshot() {
+        return snapshot;
+    }
+
+    public void addListener(Consumer<? super ChangeEvent> listener) {
+        listeners.add(Objects.requireNonNull(listener));
+    }
+
+    public void removeListener(Consumer<? super ChangeEvent> listener) {
+        listeners.remove(listener);
+    }
+
+    /// Stops watching and waits for the watching thread to finish the batch
+    /// it is handling, if any.
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+        if (Thread.currentThread() != thread) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                var key = watchService.take();
+                var affected = new LinkedHashSet<Path>();
+                collect(key, affected);
+
+                // Keep collecting until the burst is over, or the batch has gone on too long
+                long debounceNanos = debounce.toNanos();
+                long maxBatchNanos = debounceNanos > Long.MAX_VALUE / MAX_BATCH_DEBOUNCES
+                        ? Long.MAX_VALUE
+                        : debounceNanos * MAX_BATCH_DEBOUNCES;
+                long batchStart = System.nanoTime();
+                while (true) {
+                    long remaining = maxBatchNanos - (System.nanoTime() - batchStart);
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    key = watchService.poll(Math.min(debounceNanos, remaining), TimeUnit.NANOSECONDS);
+                    if (key == null) {
+                        break;
+                    }
+                    collect(key, affected);
+                }
+                apply(affected);
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            // Closed
+        }
+    }
+
+    /// Adds the paths that need to be looked at again because of the events on `key`.
+    private void collect(WatchKey key, Set<Path> affected) {
+        var directory = watchedDirectories.get(key);
+        var events = key.pollEvents();
+        if (!key.reset()) {
+            var removed = watchedDirectories.remove(key);
+            if (removed != null) {
+                watchKeys.remove(removed, key);
+            }
+        }
+        if (directory == null) {
+            return;
+        }
+
+        for (var event : events) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                // Events were lost, so everything under this directory might have changed
+                if (moduleDirectories.containsKey(directory)) {
+                    affected.addAll(moduleDirectories.get(directory));
+                    try (var children = Files.list(directory)) {
+                        children.map(Path::normalize).forEach(affected::add);
+                    } catch (IOException e) {
+                        // The directory is gone, and its members have already been added
+                    }
+                }
+                affected.add(directory);
+                for (var entry : directEntries) {
+                    if (directory.equals(entry.getParent())) {
+                        affected.add(entry);
+                    }
+                }
+                continue;
+            }
+
+            var child = directory.resolve((Path) event.context()).normalize();
+            if (moduleDirectories.containsKey(directory)) {
+                affected.add(child);
+            }
+            if (directEntries.contains(child)) {
+                affected.add(child);
+            }
+            if (child.getFileName().toString().equals(MODULE_INFO)
+                    && (parsed.containsKey(directory)
+                    || directEntries.contains(directory)
+                    || isModuleDirectoryMember(directory))) {
+                affected.add(directory);
+            }
+        }
+    }
+
+    private boolean isModuleDirectoryMember(Path path) {
+        var parent = path.getParent();
+        return parent != null && moduleDirectories.containsKey(parent);
+    }
+
+    private void apply(Set<Path> affected) {
+        for (var path : affected) {
+            if (moduleDirectories.containsKey(path)) {
+                // A module directory that gains a module-info.class of its own is
+                // only treated as an exploded module once the index is started again
+                continue;
+            }
+            refresh(path);
+        }
+
+        var previous = snapshot;
+        var next = buildSnapshot(previous.generation() + 1);
+        var changes = changes(previous, next);
+        if (changes.isEmpty()
+                && previous.opens().equals(next.opens())
+                && previous.failures().equals(next.failures())) {
+            return;
+        }
+
+        snapshot = next;
+        var event = new ChangeEvent(next, changes);
+        for (var listener : listeners) {
+            try {
+                listener.accept(event);
+            } catch (RuntimeException e) {
+                var thread = Thread.currentThread();
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+            }
+        }
+    }
+
+    /// Reads a single jar, jmod or exploded module again.
+    private void refresh(Path path) {
+        parsed.remove(path);
+        failures.remove(path);
+
+        boolean member = isModuleDirectoryMember(path);
+        boolean exploded = Files.isDirectory(path) && ModulePathScanner.isExplodedModule(path);
+        boolean moduleFile = ModulePathScanner.isModuleFile(path);
+        if (member) {
+            var members = moduleDirectories.get(path.getParent());
+            if (exploded || moduleFile) {
+                members.add(path);
+            } else {
+                members.remove(path);
+            }
+        }
+        if (Files.isDirectory(path)) {
+            try {
+                watch(path);
+            } catch (IOException e) {
+                failures.put(path, e);
+                return;
+            }
+        }
+        if (!exploded && !(member ? moduleFile : Files.isRegularFile(path))) {
+            return;
+        }
+
+        try {
+            if (exploded) {
+                parsed.put(path, ModuleInfo.parse(Files.readAllBytes(path.resolve(MODULE_INFO))));
+            } else {
+                try (var zipFile = new ZipFile(path.toFile())) {
+                    ModuleInfo.parse(zipFile, NamePool.NONE).ifPresent(module -> parsed.put(path, module));
+                }
+            }
+        } catch (NoSuchFileException e) {
+            // Deleted since the event, which a later event will report
+        } catch (IOException | RuntimeException e) {
+            failures.put(path, e);
+        }
+    }
+
+    private void watch(Path directory) throws IOException {
+        if (watchKeys.containsKey(directory)) {
+            return;
+        }
+        var key = directory.register(
+                watchService,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_DELETE
+        );
+        watchedDirectories.put(key, directory);
+        watchKeys.put(directory, key);
+    }
+
+    private Snapshot buildSnapshot(long generation) {
+        var modules = new LinkedHashMap<String, ModuleInfo>();
+        var locations = new LinkedHashMap<String, Path>();
+        var opens = new LinkedHashMap<String, List<Export>>();
+        for (var entry : modulePath) {
+            var members = moduleDirectories.get(entry);
+            for (var path : members != null ? members : Set.of(entry)) {
+                var module = parsed.get(path);
+                if (module != null && !modules.containsKey(module.moduleInfo().name())) {
+                    var name = module.moduleInfo().name();
+                    modules.put(name, module.moduleInfo());
+                    locations.put(name, path);
+                    opens.put(name, module.opens());
+                }
+            }
+        }
+        return new Snapshot(generation, modules, locations, opens, failures);
+    }
+
+    private static List<Change> changes(Snapshot previous, Snapshot next) {
+        var changes = new ArrayList<Change>();
+        for (var module : previous.modules().entrySet()) {
+            if (!next.modules().containsKey(module.getKey())) {
+                changes.add(new Change.Removed(
+                        module.getKey(),
+                        module.getValue(),
+                        previous.locations().get(module.getKey())
+                ));
+            }
+        }
+        for (var module : next.modules().entrySet()) {
+            var name = module.getKey();
+            var location = next.locations().get(name);
+            var before = previous.modules().get(name);
+            if (before == null) {
+                changes.add(new Change.Added(name, module.getValue(), location));
+            } else if (!before.equals(module.getValue()) || !location.equals(previous.locations().get(name))) {
+                changes.add(new Change.Updated(name, before, module.getValue(), location));
+            }
+        }
+        return changes;
+    }
+}
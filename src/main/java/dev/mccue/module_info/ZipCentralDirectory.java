@@ -0,0 +1,374 @@
+package dev.mccue.module_info;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/// The central directory of a zip archive, read without touching any entry data.
+///
+/// Only the end of central directory record and the central directory itself
+/// are read up front. Individual entries are read on demand with
+/// {@link #readEntry(ZipSource, Entry)}. Archives with a prefix, such as jmod
+/// files, are supported in the same way {@link java.util.zip.ZipFile} supports them.
+final class ZipCentralDirectory {
+    static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    static final int END_SIGNATURE = 0x06054b50;
+    static final int ZIP64_END_SIGNATURE = 0x06064b50;
+    static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+
+    static final int LOCAL_HEADER_SIZE = 30;
+    static final int CENTRAL_HEADER_SIZE = 46;
+    static final int END_SIZE = 22;
+    static final int ZIP64_LOCATOR_SIZE = 20;
+    static final int ZIP64_END_SIZE = 56;
+
+    static final int STORED = 0;
+    static final int DEFLATED = 8;
+
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+    private static final byte[] MODULE_INFO_SUFFIX = "module-info.class".getBytes(StandardCharsets.US_ASCII);
+
+    /// A single central directory header.
+    ///
+    /// @param headerPosition Where the header starts within {@link #headers()}.
+    /// @param localHeaderOffset Offset of the local header, relative to the start of the zip
+    ///                          data (which is not the start of the file when it has a prefix).
+    record Entry(
+            String name,
+            int headerPosition,
+            int flags,
+            int method,
+            int crc,
+            long compressedSize,
+            long uncompressedSize,
+            long localHeaderOffset
+    ) {
+        boolean isDirectory() {
+            return name.endsWith("/");
+        }
+    }
+
+    private final ByteBuffer headers;
+    private final int entryCount;
+    private final long base;
+    private final long centralDirectoryOffset;
+    private final byte[] comment;
+
+    private ZipCentralDirectory(
+            ByteBuffer headers,
+            int entryCount,
+            long base,
+            long centralDirectoryOffset,
+            byte[] comment
+    ) {
+        this.headers = headers;
+        this.entryCount = entryCount;
+        this.base = base;
+        this.centralDirectoryOffset = centralDirectoryOffset;
+        this.comment = comment;
+    }
+
+    /// The raw central directory, in little endian order.
+    ByteBuffer headers() {
+        return headers.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    int entryCount() {
+        return entryCount;
+    }
+
+    /// How many bytes come before the zip data in the file.
+    long base() {
+        return base;
+    }
+
+    /// The archive comment from the end of central directory record.
+    byte[] comment() {
+        return comment.clone();
+    }
+
+    /// Absolute position of the central directory within the file.
+    long centralDirectoryPosition() {
+        return base + centralDirectoryOffset;
+    }
+
+    static ZipCentralDirectory read(ZipSource source) throws IOException {
+        long size = source.size();
+        if (size < END_SIZE) {
+            throw new ZipException("Not a zip file: too small");
+        }
+
+        // Almost every archive has no comment, so the end record is the last 22 bytes.
+        // Only when it isn't there is the tail searched as far back as a comment can reach.
+        long tailPosition = size - END_SIZE;
+        var tail = ByteBuffer.allocate(END_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        source.readFully(tailPosition, tail);
+        int end = 0;
+        if (tail.getInt(0) != END_SIGNATURE || tail.getShort(20) != 0) {
+            int tailSize = (int) Math.min(size, END_SIZE + MAX_COMMENT_SIZE);
+            tailPosition = size - tailSize;
+            tail = ByteBuffer.allocate(tailSize).order(ByteOrder.LITTLE_ENDIAN);
+            source.readFully(tailPosition, tail);
+
+            end = -1;
+            for (int i = tailSize - END_SIZE; i >= 0; i--) {
+                if (tail.getInt(i) == END_SIGNATURE
+                        && i + END_SIZE + Short.toUnsignedInt(tail.getShort(i + 20)) <= tailSize) {
+                    end = i;
+                    break;
+                }
+            }
+            if (end < 0) {
+                throw new ZipException("Not a zip file: end of central directory not found");
+            }
+        }
+
+        long endPosition = tailPosition + end;
+        var comment = new byte[Short.toUnsignedInt(tail.getShort(end + 20))];
+        tail.get(end + END_SIZE, comment);
+        long entryCount = Short.toUnsignedInt(tail.getShort(end + 10));
+        long centralDirectorySize = Integer.toUnsignedLong(tail.getInt(end + 12));
+        long centralDirectoryOffset = Integer.toUnsignedLong(tail.getInt(end + 16));
+        long centralDirectoryEnd = endPosition;
+
+        if (entryCount == 0xFFFF || centralDirectorySize == 0xFFFFFFFFL || centralDirectoryOffset == 0xFFFFFFFFL) {
+            long locatorPosition = endPosition - ZIP64_LOCATOR_SIZE;
+            if (locatorPosition >= 0) {
+                var locator = ByteBuffer.allocate(ZIP64_LOCATOR_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                source.readFully(locatorPosition, locator);
+                if (locator.getInt(0) == ZIP64_LOCATOR_SIGNATURE) {
+                    // Without a prefix the zip64 end record sits right before the locator,
+                    // otherwise fall back to the position it says it was written at
+                    var zip64End = ByteBuffer.allocate(ZIP64_END_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                    long zip64EndPosition = -1;
+                    for (long candidate : new long[] { locatorPosition - ZIP64_END_SIZE, locator.getLong(8) }) {
+                        if (candidate >= 0 && candidate + ZIP64_END_SIZE <= size) {
+                            zip64End.clear();
+                            source.readFully(candidate, zip64End);
+                            if (zip64End.getInt(0) == ZIP64_END_SIGNATURE) {
+                                zip64EndPosition = candidate;
+                                break;
+                            }
+                        }
+                    }
+                    if (zip64EndPosition < 0) {
+                        throw new ZipException("Invalid zip64 end of central directory record");
+                    }
+                    entryCount = zip64End.getLong(32);
+                    centralDirectorySize = zip64End.getLong(40);
+                    centralDirectoryOffset = zip64End.getLong(48);
+                    centralDirectoryEnd = zip64EndPosition;
+                }
+            }
+        }
+
+        long base = centralDirectoryEnd - centralDirectorySize - centralDirectoryOffset;
+        if (base < 0) {
+            throw new ZipException("Invalid end of central directory record");
+        }
+        if (centralDirectorySize > Integer.MAX_VALUE || entryCount > Integer.MAX_VALUE) {
+            throw new ZipException("Central directory too large: " + centralDirectorySize + " bytes");
+        }
+
+        var headers = ByteBuffer.allocate((int) centralDirectorySize).order(ByteOrder.LITTLE_ENDIAN);
+        source.readFully(base + centralDirectoryOffset, headers);
+        headers.flip();
+        return new ZipCentralDirectory(headers, (int) entryCount, base, centralDirectoryOffset, comment);
+    }
+
+    /// Position of the first header, to be used with {@link #nextHeader(int)},
+    /// or `-1` when the archive is empty.
+    int firstHeader() {
+        return hasHeaderAt(0) ? 0 : -1;
+    }
+
+    /// Position of the header after the one at `position`, or `-1` when
+    /// there are no more headers.
+    int nextHeader(int position) {
+        int next = position + CENTRAL_HEADER_SIZE
+                + nameLength(position)
+                + Short.toUnsignedInt(headers.getShort(position + 30))
+                + Short.toUnsignedInt(headers.getShort(position + 32));
+        return hasHeaderAt(next) ? next : -1;
+    }
+
+    boolean hasHeaderAt(int position) {
+        return position >= 0
+                && position + CENTRAL_HEADER_SIZE <= headers.limit()
+                && headers.getInt(position) == CENTRAL_HEADER_SIGNATURE;
+    }
+
+    int nameLength(int position) {
+        return Short.toUnsignedInt(headers.getShort(position + 28));
+    }
+
+    /// Compares the tail of the entry name at `position` to `suffix` without decoding it.
+    boolean nameEndsWith(int position, byte[] suffix) {
+        int nameLength = nameLength(position);
+        if (nameLength < suffix.length) {
+            return false;
+        }
+        int start = position + CENTRAL_HEADER_SIZE + nameLength - suffix.length;
+        for (int i = 0; i < suffix.length; i++) {
+            if (headers.get(start + i) != suffix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    String name(int position) {
+        var bytes = new byte[nameLength(position)];
+        headers.get(position + CENTRAL_HEADER_SIZE, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    Entry entryAt(int position) {
+        if (!hasHeaderAt(position)) {
+            throw new IllegalArgumentException("No central directory header at " + position);
+        }
+        int flags = Short.toUnsignedInt(headers.getShort(position + 8));
+        int method = Short.toUnsignedInt(headers.getShort(position + 10));
+        int crc = headers.getInt(position + 16);
+        long compressedSize = Integer.toUnsignedLong(headers.getInt(position + 20));
+        long uncompressedSize = Integer.toUnsignedLong(headers.getInt(position + 24));
+        long localHeaderOffset = Integer.toUnsignedLong(headers.getInt(position + 42));
+
+        if (compressedSize == 0xFFFFFFFFL || uncompressedSize == 0xFFFFFFFFL || localHeaderOffset == 0xFFFFFFFFL) {
+            int extra = position + CENTRAL_HEADER_SIZE + nameLength(position);
+            int extraEnd = extra + Short.toUnsignedInt(headers.getShort(position + 30));
+            while (extra + 4 <= extraEnd) {
+                int tag = Short.toUnsignedInt(headers.getShort(extra));
+                int length = Short.toUnsignedInt(headers.getShort(extra + 2));
+                if (tag == 0x0001) {
+                    int field = extra + 4;
+                    if (uncompressedSize == 0xFFFFFFFFL) {
+                        uncompressedSize = headers.getLong(field);
+                        field += 8;
+                    }
+                    if (compressedSize == 0xFFFFFFFFL) {
+                        compressedSize = headers.getLong(field);
+                        field += 8;
+                    }
+                    if (localHeaderOffset == 0xFFFFFFFFL) {
+                        localHeaderOffset = headers.getLong(field);
+                    }
+                    break;
+                }
+                extra += 4 + length;
+            }
+        }
+
+        return new Entry(
+                name(position),
+                position,
+                flags,
+                method,
+                crc,
+                compressedSize,
+                uncompressedSize,
+                localHeaderOffset
+        );
+    }
+
+    List<Entry> entries() {
+        var entries = new ArrayList<Entry>(entryCount);
+        for (int position = firstHeader(); position != -1; position = nextHeader(position)) {
+            entries.add(entryAt(position));
+        }
+        return entries;
+    }
+
+    /// Every entry whose name ends in `module-info.class`, in central directory order.
+    ///
+    /// Only the names of those entries are decoded.
+    List<Entry> moduleInfoCandidates() {
+        var candidates = new ArrayList<Entry>();
+        for (int position = firstHeader(); position != -1; position = nextHeader(position)) {
+            if (nameEndsWith(position, MODULE_INFO_SUFFIX)) {
+                candidates.add(entryAt(position));
+            }
+        }
+        return candidates;
+    }
+
+    /// Absolute position of the data of `entry`, found by reading its local header.
+    long dataPosition(ZipSource source, Entry entry) throws IOException {
+        long localHeaderPosition = base + entry.localHeaderOffset();
+        var localHeader = ByteBuffer.allocate(LOCAL_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        source.readFully(localHeaderPosition, localHeader);
+        if (localHeader.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+            throw new ZipException("Invalid local header for " + entry.name());
+        }
+        return localHeaderPosition + LOCAL_HEADER_SIZE
+                + Short.toUnsignedInt(localHeader.getShort(26))
+                + Short.toUnsignedInt(localHeader.getShort(28));
+    }
+
+    /// Reads and, if needed, inflates a single entry.
+    ///
+    /// The sizes in the central directory are not trusted for allocation: the
+    /// compressed data has to fit in the archive, and the inflated data starts
+    /// in a buffer of at most {@link ReadBufferPool#MAX_SIZE_HINT} bytes that
+    /// grows as the data fills it.
+    byte[] readEntry(ZipSource source, Entry entry) throws IOException {
+        if (entry.compressedSize() > Integer.MAX_VALUE - 8 || entry.uncompressedSize() > Integer.MAX_VALUE - 8) {
+            throw new ZipException("Entry too large: " + entry.name());
+        }
+
+        long dataPosition = dataPosition(source, entry);
+        if (entry.compressedSize() > source.size() - dataPosition) {
+            throw new ZipException("Truncated entry: " + entry.name());
+        }
+        var compressed = ByteBuffer.allocate((int) entry.compressedSize());
+        source.readFully(dataPosition, compressed);
+
+        byte[] bytes;
+        if (entry.method() == STORED) {
+            bytes = compressed.array();
+        } else if (entry.method() == DEFLATED) {
+            long size = entry.uncompressedSize();
+            bytes = new byte[(int) Math.min(size, ReadBufferPool.MAX_SIZE_HINT)];
+            var inflater = new Inflater(true);
+            try {
+                inflater.setInput(compressed.array());
+                int n = 0;
+                while (n < size) {
+                    if (n == bytes.length) {
+                        bytes = Arrays.copyOf(bytes, (int) Math.min(size, bytes.length * 2L));
+                    }
+                    int inflated = inflater.inflate(bytes, n, bytes.length - n);
+                    if (inflated == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    n += inflated;
+                }
+                if (n != size) {
+                    throw new ZipException("Truncated entry: " + entry.name());
+                }
+            } catch (DataFormatException e) {
+                throw new ZipException("Invalid deflate data for " + entry.name() + ": " + e.getMessage());
+            } finally {
+                inflater.end();
+            }
+        } else {
+            throw new ZipException("Unsupported compression method " + entry.method() + " for " + entry.name());
+        }
+
+        var crc = new CRC32();
+        crc.update(bytes);
+        if ((int) crc.getValue() != entry.crc()) {
+            throw new ZipException("CRC mismatch for " + entry.name());
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,53 @@
+package dev.mccue.module_info;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+
+/// Random access to the bytes of a zip archive.
+///
+/// Implementations are not thread-safe.
+interface ZipSource {
+    long size() throws IOException;
+
+    /// Fills `destination` with the bytes starting at `position`.
+    void readFully(long position, ByteBuffer destination) throws IOException;
+
+    static ZipSource of(SeekableByteChannel channel) {
+        return new ZipSource() {
+            @Override
+            public long size() throws IOException {
+                return channel.size();
+            }
+
+            @Override
+            public void readFully(long position, ByteBuffer destination) throws IOException {
+                channel.position(position);
+                while (destination.hasRemaining()) {
+                    if (channel.read(destination) < 0) {
+                        throw new EOFException("Unexpected end of zip data at " + channel.position());
+                    }
+                }
+            }
+        };
+    }
+
+    static ZipSource of(ByteBuffer buffer) {
+        var source = buffer.slice();
+        return new ZipSource() {
+            @Override
+            public long size() {
+                return source.limit();
+            }
+
+            @Override
+            public void readFully(long position, ByteBuffer destination) throws IOException {
+                if (position < 0 || position + destination.remaining() > source.limit()) {
+                    throw new EOFException("Unexpected end of zip data at " + position);
+                }
+                destination.put(source.slice((int) position, destination.remaining()));
+            }
+        };
+    }
+}
@@ -4,6 +4,7 @@ import org.jspecify.annotations.NullMarked;
 module dev.mccue.module_info {
     requires static org.jspecify;
     requires static com.fasterxml.jackson.annotation;
+    requires static jdk.jfr;
 
     exports dev.mccue.module_info;
 }
\ No newline at end of file